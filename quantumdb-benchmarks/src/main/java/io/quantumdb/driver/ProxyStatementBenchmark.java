@@ -0,0 +1,86 @@
+package io.quantumdb.driver;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.quantumdb.query.rewriter.PostgresqlQueryRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead the ProxyConnection, ProxyStatement and ProxyPreparedStatement add on top of a stub JDBC
+ * connection. The "direct" benchmarks invoke the stub connection without any proxy, and serve as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyStatementBenchmark {
+
+	private static final String QUERY = "UPDATE users SET name = ? WHERE id = ?";
+
+	private Connection directConnection;
+	private Statement directStatement;
+	private ProxyConnection proxyConnection;
+	private Statement proxyStatement;
+
+	@Setup
+	public void setUp() throws SQLException {
+		Map<String, String> tableMapping = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			tableMapping.put("table_" + i, "table_" + i + "_v2");
+		}
+		tableMapping.put("users", "users_v2");
+
+		Transformer transformer = new Transformer(new PostgresqlQueryRewriter(), tableMapping);
+
+		this.directConnection = Stubs.connection();
+		this.directStatement = directConnection.createStatement();
+		this.proxyConnection = new ProxyConnection(Stubs.connection(), transformer);
+		this.proxyStatement = proxyConnection.createStatement();
+	}
+
+	@Benchmark
+	public int directStatementExecuteUpdate() throws SQLException {
+		return directStatement.executeUpdate(QUERY);
+	}
+
+	@Benchmark
+	public int proxyStatementExecuteUpdate() throws SQLException {
+		return proxyStatement.executeUpdate(QUERY);
+	}
+
+	@Benchmark
+	public int directPreparedStatement() throws SQLException {
+		try (PreparedStatement statement = directConnection.prepareStatement(QUERY)) {
+			statement.setString(1, "John");
+			statement.setLong(2, 1L);
+			return statement.executeUpdate();
+		}
+	}
+
+	@Benchmark
+	public int proxyPreparedStatement() throws SQLException {
+		try (PreparedStatement statement = proxyConnection.prepareStatement(QUERY)) {
+			statement.setString(1, "John");
+			statement.setLong(2, 1L);
+			return statement.executeUpdate();
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package io.quantumdb.driver;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Creates JDBC objects which do not communicate with any database, so that benchmarks only measure the overhead
+ * of the QuantumDB proxy layer on top of them.
+ */
+final class Stubs {
+
+	static Connection connection() {
+		PreparedStatement preparedStatement = stub(PreparedStatement.class);
+		Statement statement = stub(Statement.class);
+
+		return (Connection) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					if (method.getName().equals("prepareStatement")) {
+						return preparedStatement;
+					}
+					else if (method.getName().equals("createStatement")) {
+						return statement;
+					}
+					return defaultValue(method.getReturnType());
+				});
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T stub(Class<T> type) {
+		return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> defaultValue(method.getReturnType()));
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		}
+		else if (type == int.class) {
+			return 1;
+		}
+		else if (type == long.class) {
+			return 1L;
+		}
+		else if (type == int[].class) {
+			return new int[0];
+		}
+		else if (type.isPrimitive() && type != void.class) {
+			return 0;
+		}
+		return null;
+	}
+
+	private Stubs() {
+		// Prevent instantiation.
+	}
+
+}
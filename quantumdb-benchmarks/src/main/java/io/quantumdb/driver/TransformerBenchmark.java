@@ -0,0 +1,64 @@
+package io.quantumdb.driver;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.quantumdb.query.rewriter.PostgresqlQueryRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the Transformer's table name lookups, and of rewriting a query with and without the help
+ * of its rewrite cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerBenchmark {
+
+	private static final String QUERY = "SELECT u.id, u.name FROM users u WHERE u.id = $1";
+
+	private Transformer cachingTransformer;
+	private Transformer nonCachingTransformer;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> tableMapping = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			tableMapping.put("table_" + i, "table_" + i + "_v2");
+		}
+		tableMapping.put("users", "users_v2");
+
+		this.cachingTransformer = new Transformer(new PostgresqlQueryRewriter(), tableMapping);
+		this.nonCachingTransformer = new Transformer(new PostgresqlQueryRewriter(), tableMapping, 0);
+	}
+
+	@Benchmark
+	public String getRefId() {
+		return cachingTransformer.getRefId("users");
+	}
+
+	@Benchmark
+	public String rewriteQueryCached() throws SQLException {
+		return cachingTransformer.rewriteQuery(QUERY);
+	}
+
+	@Benchmark
+	public String rewriteQueryUncached() throws SQLException {
+		return nonCachingTransformer.rewriteQuery(QUERY);
+	}
+
+}
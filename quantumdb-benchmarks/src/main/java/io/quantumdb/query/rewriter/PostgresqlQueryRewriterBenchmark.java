@@ -0,0 +1,106 @@
+package io.quantumdb.query.rewriter;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of rewriting queries of various shapes with the PostgresqlQueryRewriter, against a table
+ * mapping of a realistic size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostgresqlQueryRewriterBenchmark {
+
+	@Param({ "10", "1000" })
+	private int tables;
+
+	private PostgresqlQueryRewriter rewriter;
+
+	private String noTables;
+	private String shortSelect;
+	private String shortUpdate;
+	private String multiValuesInsert;
+	private String nestedCommonTableExpressions;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> tableMapping = new HashMap<>();
+		for (int i = 0; i < tables; i++) {
+			tableMapping.put("table_" + i, "table_" + i + "_v2");
+		}
+		tableMapping.put("users", "users_v2");
+		tableMapping.put("accounts", "accounts_v2");
+
+		this.rewriter = new PostgresqlQueryRewriter();
+		rewriter.setTableMapping(tableMapping);
+
+		this.noTables = "SELECT 1";
+		this.shortSelect = "SELECT u.id, u.name, a.balance FROM users u JOIN accounts a ON a.owner_id = u.id "
+				+ "WHERE u.id = $1 AND a.status = 'active'";
+		this.shortUpdate = "UPDATE accounts SET balance = balance - $1 WHERE id = $2";
+
+		StringBuilder insert = new StringBuilder("INSERT INTO users (id, name, email) VALUES ");
+		for (int i = 0; i < 10_000; i++) {
+			if (i > 0) {
+				insert.append(", ");
+			}
+			insert.append('(').append(i).append(", 'user ").append(i).append("', 'user").append(i)
+					.append("@example.com')");
+		}
+		this.multiValuesInsert = insert.toString();
+
+		StringBuilder cte = new StringBuilder("WITH level_0 AS (SELECT id, owner_id FROM accounts)");
+		for (int i = 1; i < 20; i++) {
+			cte.append(", level_").append(i).append(" AS (SELECT l.id, l.owner_id FROM level_").append(i - 1)
+					.append(" l JOIN users u ON u.id = l.owner_id WHERE u.name <> 'from users')");
+		}
+		cte.append(" SELECT * FROM level_19 JOIN table_0 ON table_0.id = level_19.id");
+		this.nestedCommonTableExpressions = cte.toString();
+	}
+
+	@Benchmark
+	public String noTables() throws SQLException {
+		return rewriter.rewrite(noTables);
+	}
+
+	@Benchmark
+	public String shortSelect() throws SQLException {
+		return rewriter.rewrite(shortSelect);
+	}
+
+	@Benchmark
+	public String shortUpdate() throws SQLException {
+		return rewriter.rewrite(shortUpdate);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String multiValuesInsert() throws SQLException {
+		return rewriter.rewrite(multiValuesInsert);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String nestedCommonTableExpressions() throws SQLException {
+		return rewriter.rewrite(nestedCommonTableExpressions);
+	}
+
+}
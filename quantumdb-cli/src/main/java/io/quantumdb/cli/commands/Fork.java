@@ -7,6 +7,7 @@ import com.google.common.collect.Lists;
 import io.quantumdb.cli.utils.CliException;
 import io.quantumdb.cli.utils.CliWriter;
 import io.quantumdb.cli.utils.CliWriter.Context;
+import io.quantumdb.cli.utils.ProgressPrinter;
 import io.quantumdb.core.backends.Backend;
 import io.quantumdb.core.backends.Config;
 import io.quantumdb.core.backends.DatabaseMigrator.MigrationException;
@@ -39,6 +40,7 @@ public class Fork extends Command {
 			writer.write("Forking database from: " + from.getId() + " to: " + to.getId() + "...");
 
 			Migrator migrator = new Migrator(backend);
+			migrator.addProgressListener(new ProgressPrinter(writer));
 			migrator.migrate(from.getId(), to.getId());
 
 			state = loadState(backend);
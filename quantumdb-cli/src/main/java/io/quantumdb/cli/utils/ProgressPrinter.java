@@ -0,0 +1,59 @@
+package io.quantumdb.cli.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import io.quantumdb.core.migration.MigrationProgress;
+import io.quantumdb.core.migration.ProgressListener;
+import io.quantumdb.core.migration.TableProgress;
+
+/**
+ * Writes the progress of copying records to the CLI, at most once every few seconds and whenever a table finishes.
+ */
+public class ProgressPrinter implements ProgressListener {
+
+	private static final long INTERVAL_MILLIS = 5_000;
+
+	private final CliWriter writer;
+	private long lastPrinted;
+
+	public ProgressPrinter(CliWriter writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public synchronized void onProgress(MigrationProgress migration, TableProgress table) {
+		long now = System.currentTimeMillis();
+		if (!table.isFinished() && now - lastPrinted < INTERVAL_MILLIS) {
+			return;
+		}
+		lastPrinted = now;
+
+		String message = String.format("Copying %s -> %s: %d%% (%,d/%,d rows, %,d rows/s, %s left), overall: %d%% (%s left)",
+				table.getSource(), table.getTarget(), Math.round(table.getPercentage()), table.getCopiedRows(),
+				table.getEstimatedRows(), Math.round(table.getRowsPerSecond()),
+				formatDuration(table.getEstimatedRemainingMillis()), Math.round(migration.getPercentage()),
+				formatDuration(migration.getEstimatedRemainingMillis()));
+
+		writer.indent(1);
+		writer.write(message);
+		writer.indent(-1);
+	}
+
+	private String formatDuration(long millis) {
+		if (millis < 0) {
+			return "unknown";
+		}
+
+		long hours = TimeUnit.MILLISECONDS.toHours(millis);
+		long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
+		long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % 60;
+		if (hours > 0) {
+			return String.format("%dh %dm", hours, minutes);
+		}
+		else if (minutes > 0) {
+			return String.format("%dm %ds", minutes, seconds);
+		}
+		return String.format("%ds", seconds);
+	}
+
+}
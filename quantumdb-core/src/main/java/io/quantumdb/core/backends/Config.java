@@ -90,6 +90,15 @@ public class Config {
 		return this;
 	}
 
+	public String getProperty(String key) {
+		return properties.getProperty(key);
+	}
+
+	public Config setProperty(String key, String value) {
+		properties.setProperty(key, value);
+		return this;
+	}
+
 	public void persist() throws IOException {
 		try (FileWriter fileWriter = new FileWriter(FILE)) {
 			properties.store(fileWriter, null);
@@ -1,6 +1,7 @@
 package io.quantumdb.core.backends;
 
 import io.quantumdb.core.migration.Migrator.Stage;
+import io.quantumdb.core.migration.ProgressListener;
 import io.quantumdb.core.versioning.State;
 import io.quantumdb.core.versioning.Version;
 
@@ -41,4 +42,11 @@ public interface DatabaseMigrator {
 	 */
 	void drop(State state, Version version) throws MigrationException;
 
+	/**
+	 * Registers a listener which is notified of the progress of copying records while applying schema changes.
+	 *
+	 * @param listener The ProgressListener to register.
+	 */
+	void addProgressListener(ProgressListener listener);
+
 }
@@ -0,0 +1,106 @@
+package io.quantumdb.core.migration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The progress of copying records into all ghost tables of a migration. Tables are registered with an estimate of
+ * their amount of records before any of them are copied, so that the overall remaining time can be estimated while
+ * the first tables are still being copied.
+ */
+public class MigrationProgress {
+
+	private final List<ProgressListener> listeners;
+	private final LongSupplier clock;
+	private final List<TableProgress> tables;
+	private Throughput throughput;
+
+	public MigrationProgress(List<ProgressListener> listeners) {
+		this(listeners, System::currentTimeMillis);
+	}
+
+	MigrationProgress(List<ProgressListener> listeners, LongSupplier clock) {
+		this.listeners = ImmutableList.copyOf(listeners);
+		this.clock = clock;
+		this.tables = new CopyOnWriteArrayList<>();
+	}
+
+	/**
+	 * Registers a copy of records from a source table into a ghost table.
+	 *
+	 * @param source The name of the source table.
+	 * @param target The name of the ghost table.
+	 * @param estimatedRows The estimated amount of records in the source table.
+	 * @return The TableProgress through which the progress of the copy is reported.
+	 */
+	public TableProgress addTable(String source, String target, long estimatedRows) {
+		TableProgress table = new TableProgress(this, clock, source, target, estimatedRows);
+		tables.add(table);
+		return table;
+	}
+
+	public ImmutableList<TableProgress> getTables() {
+		return ImmutableList.copyOf(tables);
+	}
+
+	public long getEstimatedRows() {
+		return tables.stream()
+				.mapToLong(TableProgress::getEstimatedRows)
+				.sum();
+	}
+
+	public long getCopiedRows() {
+		return tables.stream()
+				.mapToLong(TableProgress::getCopiedRows)
+				.sum();
+	}
+
+	/**
+	 * @return The moving average of the amount of rows copied per second over all tables.
+	 */
+	public synchronized double getRowsPerSecond() {
+		return throughput == null ? 0 : throughput.getRowsPerSecond();
+	}
+
+	public double getPercentage() {
+		long estimated = getEstimatedRows();
+		return estimated == 0 ? 0 : Math.min(100, getCopiedRows() * 100.0 / estimated);
+	}
+
+	/**
+	 * @return The estimated amount of milliseconds until the records of all tables have been copied, or -1 if this
+	 * cannot be estimated yet.
+	 */
+	public long getEstimatedRemainingMillis() {
+		double rowsPerSecond = getRowsPerSecond();
+		if (rowsPerSecond <= 0) {
+			return -1;
+		}
+		return (long) ((getEstimatedRows() - getCopiedRows()) * 1000 / rowsPerSecond);
+	}
+
+	synchronized void started(TableProgress table) {
+		if (throughput == null) {
+			throughput = new Throughput(clock.getAsLong());
+		}
+	}
+
+	void advanced(TableProgress table, long rows) {
+		synchronized (this) {
+			if (throughput == null) {
+				throughput = new Throughput(clock.getAsLong());
+			}
+			if (rows > 0) {
+				throughput.record(rows, clock.getAsLong());
+			}
+		}
+
+		for (ProgressListener listener : listeners) {
+			listener.onProgress(this, table);
+		}
+	}
+
+}
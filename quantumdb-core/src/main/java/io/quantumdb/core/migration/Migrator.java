@@ -8,6 +8,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import io.quantumdb.core.backends.Backend;
 import io.quantumdb.core.backends.DatabaseMigrator;
 import io.quantumdb.core.backends.DatabaseMigrator.MigrationException;
@@ -56,9 +57,21 @@ public class Migrator {
 	}
 
 	private final Backend backend;
+	private final List<ProgressListener> progressListeners;
 
 	public Migrator(Backend backend) {
 		this.backend = backend;
+		this.progressListeners = Lists.newCopyOnWriteArrayList();
+	}
+
+	/**
+	 * Registers a listener which is notified of the progress of copying records into ghost tables, including the
+	 * estimated remaining time, while migrating.
+	 *
+	 * @param listener The ProgressListener to register.
+	 */
+	public void addProgressListener(ProgressListener listener) {
+		progressListeners.add(listener);
 	}
 
 	public void migrate(String sourceVersionId, String targetVersionId) throws MigrationException {
@@ -88,6 +101,7 @@ public class Migrator {
 		}
 
 		DatabaseMigrator migrator = backend.getMigrator();
+		progressListeners.forEach(migrator::addProgressListener);
 		List<Stage> stages = VersionTraverser.verifyPathAndState(state, from, to);
 
 		Version intermediate = null;
@@ -0,0 +1,17 @@
+package io.quantumdb.core.migration;
+
+/**
+ * Receives updates on the progress of copying records into ghost tables while a migration is in progress.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+	/**
+	 * Called after a batch of records was copied. This may be called concurrently by multiple threads.
+	 *
+	 * @param migration The progress of the entire migration.
+	 * @param table The progress of the table of which a batch of records was copied.
+	 */
+	void onProgress(MigrationProgress migration, TableProgress table);
+
+}
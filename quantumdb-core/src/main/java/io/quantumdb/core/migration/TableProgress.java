@@ -0,0 +1,128 @@
+package io.quantumdb.core.migration;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The progress of copying the records of a single source table into a ghost table. The amount of records in the
+ * source table is estimated before the copy starts, and raised whenever more records turn out to be copied.
+ */
+public class TableProgress {
+
+	private final MigrationProgress migration;
+	private final LongSupplier clock;
+	private final String source;
+	private final String target;
+
+	private long estimatedRows;
+	private long copiedRows;
+	private Throughput throughput;
+	private boolean finished;
+
+	TableProgress(MigrationProgress migration, LongSupplier clock, String source, String target, long estimatedRows) {
+		this.migration = migration;
+		this.clock = clock;
+		this.source = source;
+		this.target = target;
+		this.estimatedRows = Math.max(0, estimatedRows);
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public synchronized long getEstimatedRows() {
+		return Math.max(estimatedRows, copiedRows);
+	}
+
+	public synchronized long getCopiedRows() {
+		return copiedRows;
+	}
+
+	public synchronized boolean isStarted() {
+		return throughput != null;
+	}
+
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return The moving average of the amount of rows copied per second, or zero if no rows have been copied yet.
+	 */
+	public synchronized double getRowsPerSecond() {
+		return throughput == null || finished ? 0 : throughput.getRowsPerSecond();
+	}
+
+	/**
+	 * @return The percentage of the estimated amount of rows which has been copied.
+	 */
+	public synchronized double getPercentage() {
+		if (finished) {
+			return 100;
+		}
+		long estimated = getEstimatedRows();
+		return estimated == 0 ? 0 : Math.min(100, copiedRows * 100.0 / estimated);
+	}
+
+	/**
+	 * @return The estimated amount of milliseconds until all rows have been copied, or -1 if this cannot be
+	 * estimated yet.
+	 */
+	public synchronized long getEstimatedRemainingMillis() {
+		if (finished) {
+			return 0;
+		}
+		double rowsPerSecond = getRowsPerSecond();
+		if (rowsPerSecond <= 0) {
+			return -1;
+		}
+		return (long) ((getEstimatedRows() - copiedRows) * 1000 / rowsPerSecond);
+	}
+
+	/**
+	 * Marks the start of the copy.
+	 */
+	public void start() {
+		synchronized (this) {
+			throughput = new Throughput(clock.getAsLong());
+		}
+		migration.started(this);
+	}
+
+	/**
+	 * Records that a batch of records has been copied, and notifies all listeners.
+	 *
+	 * @param rows The amount of records in the batch.
+	 */
+	public void advance(long rows) {
+		synchronized (this) {
+			if (throughput == null) {
+				throughput = new Throughput(clock.getAsLong());
+			}
+			copiedRows += rows;
+			throughput.record(rows, clock.getAsLong());
+		}
+		migration.advanced(this, rows);
+	}
+
+	/**
+	 * Marks the copy as completed, and notifies all listeners.
+	 */
+	public void finish() {
+		synchronized (this) {
+			finished = true;
+			estimatedRows = copiedRows;
+		}
+		migration.advanced(this, 0);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return source + " -> " + target + ": " + copiedRows + "/" + getEstimatedRows() + " rows";
+	}
+
+}
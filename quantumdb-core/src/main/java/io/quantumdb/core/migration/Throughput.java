@@ -0,0 +1,32 @@
+package io.quantumdb.core.migration;
+
+/**
+ * Tracks the amount of rows copied per second, using an exponentially weighted moving average over the intervals
+ * between consecutive updates.
+ */
+class Throughput {
+
+	private static final double SMOOTHING = 0.3;
+
+	private long lastUpdate;
+	private double rowsPerSecond;
+	private boolean measured;
+
+	Throughput(long startMillis) {
+		this.lastUpdate = startMillis;
+	}
+
+	void record(long rows, long nowMillis) {
+		long elapsed = Math.max(1, nowMillis - lastUpdate);
+		double sample = rows * 1000.0 / elapsed;
+
+		rowsPerSecond = measured ? SMOOTHING * sample + (1 - SMOOTHING) * rowsPerSecond : sample;
+		measured = true;
+		lastUpdate = nowMillis;
+	}
+
+	double getRowsPerSecond() {
+		return rowsPerSecond;
+	}
+
+}
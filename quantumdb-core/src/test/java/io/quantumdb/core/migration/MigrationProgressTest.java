@@ -0,0 +1,86 @@
+package io.quantumdb.core.migration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MigrationProgressTest {
+
+	private AtomicLong clock;
+	private List<TableProgress> notifications;
+	private MigrationProgress progress;
+
+	@Before
+	public void setUp() {
+		this.clock = new AtomicLong(0);
+		this.notifications = Lists.newArrayList();
+		this.progress = new MigrationProgress(Lists.newArrayList((migration, table) -> notifications.add(table)),
+				clock::get);
+	}
+
+	@Test
+	public void testThatRemainingTimeIsEstimatedFromThroughput() {
+		TableProgress table = progress.addTable("users", "table_1", 10_000);
+		table.start();
+
+		clock.set(1_000);
+		table.advance(1_000);
+
+		assertEquals(1_000, table.getRowsPerSecond(), 0.01);
+		assertEquals(10, table.getPercentage(), 0.01);
+		assertEquals(9_000, table.getEstimatedRemainingMillis());
+		assertEquals(1, notifications.size());
+	}
+
+	@Test
+	public void testThatThroughputIsAMovingAverage() {
+		TableProgress table = progress.addTable("users", "table_1", 10_000);
+		table.start();
+
+		clock.set(1_000);
+		table.advance(1_000);
+		clock.set(1_500);
+		table.advance(1_000);
+
+		assertEquals(0.3 * 2_000 + 0.7 * 1_000, table.getRowsPerSecond(), 0.01);
+	}
+
+	@Test
+	public void testThatOverallProgressIncludesTablesWhichHaveNotStartedYet() {
+		TableProgress users = progress.addTable("users", "table_1", 1_000);
+		progress.addTable("orders", "table_2", 3_000);
+
+		users.start();
+		clock.set(1_000);
+		users.advance(1_000);
+		users.finish();
+
+		assertEquals(100, users.getPercentage(), 0.01);
+		assertEquals(25, progress.getPercentage(), 0.01);
+		assertEquals(3_000, progress.getEstimatedRemainingMillis());
+	}
+
+	@Test
+	public void testThatEstimateIsRaisedWhenMoreRowsAreCopied() {
+		TableProgress table = progress.addTable("users", "table_1", 100);
+		table.start();
+		table.advance(150);
+
+		assertEquals(150, table.getEstimatedRows());
+		assertEquals(100, table.getPercentage(), 0.01);
+	}
+
+	@Test
+	public void testThatRemainingTimeIsUnknownBeforeAnyRowsAreCopied() {
+		TableProgress table = progress.addTable("users", "table_1", 100);
+
+		assertEquals(-1, table.getEstimatedRemainingMillis());
+		assertEquals(-1, progress.getEstimatedRemainingMillis());
+	}
+
+}
@@ -5,11 +5,12 @@ import java.sql.DriverManager;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
 import java.util.Properties;
+import java.util.ServiceLoader;
 import java.util.logging.Logger;
 
-import io.quantumdb.query.rewriter.PostgresqlQueryRewriter;
-import io.quantumdb.query.rewriter.QueryRewriter;
+import com.google.common.cache.CacheStats;
 
 public class Driver implements java.sql.Driver {
 
@@ -22,11 +23,18 @@ public class Driver implements java.sql.Driver {
 		}
 	}
 
+	private final TableMappingRegistry registry;
 	private java.sql.Driver delegate;
 	private Transformer transformer;
 
 	private Driver() {
 		// Prevent others from instantiating this class.
+		this.registry = new TableMappingRegistry();
+
+		Iterator<DriverMetrics> metrics = ServiceLoader.load(DriverMetrics.class).iterator();
+		if (metrics.hasNext()) {
+			registry.setMetrics(metrics.next());
+		}
 	}
 
 	@Override
@@ -57,8 +65,13 @@ public class Driver implements java.sql.Driver {
 
 		this.delegate = DriverManager.getDriver(url);
 		Connection connection = delegate.connect(url, info);
-		QueryRewriter queryRewriter = new PostgresqlQueryRewriter();
-		this.transformer = new Transformer(connection, queryRewriter, version);
+
+		java.sql.Driver delegateDriver = delegate;
+		String delegateUrl = url;
+		Properties listenerInfo = new Properties();
+		listenerInfo.putAll(info);
+		this.transformer = registry.getTransformer(url, version, connection,
+				() -> delegateDriver.connect(delegateUrl, listenerInfo));
 
 		return new ProxyConnection(connection, transformer);
 	}
@@ -97,6 +110,19 @@ public class Driver implements java.sql.Driver {
 		return transformer.getRefId(tableName);
 	}
 
+	public CacheStats getRewriteCacheStats() {
+		return transformer.getRewriteCacheStats();
+	}
+
+	/**
+	 * Registers the DriverMetrics to which this driver reports, replacing any previously registered one.
+	 *
+	 * @param metrics The DriverMetrics to report to, or NULL to stop reporting.
+	 */
+	public void setMetrics(DriverMetrics metrics) {
+		registry.setMetrics(metrics == null ? DriverMetrics.NO_OP : metrics);
+	}
+
 	private String parseVersion(String url) {
 		String[] lookups = new String[] { "?version=", "&version=" };
 
@@ -0,0 +1,50 @@
+package io.quantumdb.driver;
+
+/**
+ * Service provider interface through which the QuantumDB driver reports on its own behaviour, for instance to bridge
+ * these events to a metrics library such as Micrometer or Dropwizard Metrics. An implementation can either be
+ * registered through {@link Driver#setMetrics(DriverMetrics)}, or be discovered through the
+ * {@link java.util.ServiceLoader} mechanism by listing it in a META-INF/services/io.quantumdb.driver.DriverMetrics file.
+ *
+ * All methods are invoked on the hot path of the driver, and should therefore be cheap and must not throw. By
+ * default the {@link #NO_OP} implementation is used, in which case the driver does not even measure durations.
+ */
+public interface DriverMetrics {
+
+	DriverMetrics NO_OP = new DriverMetrics() {
+	};
+
+	/**
+	 * Invoked for every statement whose SQL passed through the driver to be rewritten. Prepared statements which are
+	 * reused from a connection's statement cache don't pass through the driver, and are reported through
+	 * {@link #recordStatementReuse(String)} instead.
+	 *
+	 * @param version The version the connection is pinned to, or NULL if it isn't pinned to any version.
+	 * @param cacheHit True if the rewritten SQL was served from the rewrite cache, false if it had to be rewritten.
+	 * @param durationNanos The time it took to obtain the rewritten SQL, in nanoseconds.
+	 */
+	default void recordRewrite(String version, boolean cacheHit, long durationNanos) {
+		// Do nothing.
+	}
+
+	/**
+	 * Invoked for every prepared statement which was reused from a connection's statement cache, in which case its
+	 * previously rewritten SQL is used without being looked up or rewritten again.
+	 *
+	 * @param version The version the connection is pinned to, or NULL if it isn't pinned to any version.
+	 */
+	default void recordStatementReuse(String version) {
+		// Do nothing.
+	}
+
+	/**
+	 * Invoked whenever the driver reloaded the table mapping of a version, after being notified of a change.
+	 *
+	 * @param version The version whose table mapping was reloaded.
+	 * @param changed True if the reloaded table mapping differed from the one in use, false otherwise.
+	 */
+	default void recordTableMappingRefresh(String version, boolean changed) {
+		// Do nothing.
+	}
+
+}
@@ -28,11 +28,11 @@ import io.quantumdb.query.rewriter.Experimental;
 class MetaResultSet implements ResultSet {
 
 	private final ResultSet resultSet;
-	private final Map<String, String> tableMapping;
+	private final TableMapping tableMapping;
 
 	MetaResultSet(ResultSet resultSet, Transformer transformer) {
 		this.resultSet = resultSet;
-		this.tableMapping = transformer.getTableMappings();
+		this.tableMapping = transformer.getTableMapping();
 	}
 
 	@Override
@@ -43,11 +43,11 @@ class MetaResultSet implements ResultSet {
 			}
 
 			String tableName = resultSet.getString("TABLE_NAME");
-			String refId = tableMapping.get(tableName);
+			String refId = tableMapping.getRefId(tableName);
 
 			if (refId == null) {
 				// Check if this is a target table and return true, or false otherwise.
-				if (tableMapping.values().contains(tableName)) {
+				if (tableMapping.containsRefId(tableName)) {
 					return true;
 				}
 			}
@@ -73,11 +73,7 @@ class MetaResultSet implements ResultSet {
 		String result = resultSet.getString(columnIndex);
 		String columnName = getMetaData().getColumnName(columnIndex);
 		if ("TABLE_NAME".equalsIgnoreCase(columnName)) {
-			return tableMapping.entrySet().stream()
-					.filter(entry -> entry.getValue().equals(result))
-					.map(entry -> entry.getKey())
-					.findFirst()
-					.orElse(result);
+			return toTableName(result);
 		}
 		return result;
 	}
@@ -163,11 +159,7 @@ class MetaResultSet implements ResultSet {
 	public String getString(String columnLabel) throws SQLException {
 		String result = resultSet.getString(columnLabel);
 		if ("TABLE_NAME".equalsIgnoreCase(columnLabel)) {
-			return tableMapping.entrySet().stream()
-					.filter(entry -> entry.getValue().equals(result))
-					.map(entry -> entry.getKey())
-					.findFirst()
-					.orElse(result);
+			return toTableName(result);
 		}
 		return result;
 	}
@@ -854,11 +846,7 @@ class MetaResultSet implements ResultSet {
 		String result = resultSet.getString(columnIndex);
 		String columnName = getMetaData().getColumnName(columnIndex);
 		if ("TABLE_NAME".equalsIgnoreCase(columnName)) {
-			return tableMapping.entrySet().stream()
-					.filter(entry -> entry.getValue().equals(result))
-					.map(entry -> entry.getKey())
-					.findFirst()
-					.orElse(result);
+			return toTableName(result);
 		}
 		return result;
 	}
@@ -867,11 +855,7 @@ class MetaResultSet implements ResultSet {
 	public String getNString(String columnLabel) throws SQLException {
 		String result = resultSet.getString(columnLabel);
 		if ("TABLE_NAME".equalsIgnoreCase(columnLabel)) {
-			return tableMapping.entrySet().stream()
-					.filter(entry -> entry.getValue().equals(result))
-					.map(entry -> entry.getKey())
-					.findFirst()
-					.orElse(result);
+			return toTableName(result);
 		}
 		return result;
 	}
@@ -1045,4 +1029,10 @@ class MetaResultSet implements ResultSet {
 	public boolean isWrapperFor(Class<?> iface) throws SQLException {
 		return resultSet.isWrapperFor(iface);
 	}
+
+	private String toTableName(String refId) {
+		String tableName = tableMapping.getTableName(refId);
+		return tableName == null ? refId : tableName;
+	}
+
 }
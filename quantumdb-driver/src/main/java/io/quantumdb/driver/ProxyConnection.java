@@ -8,6 +8,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.NClob;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
@@ -23,10 +24,12 @@ public class ProxyConnection implements Connection {
 
 	private final Connection connection;
 	private final Transformer transformer;
+	private final StatementCache statementCache;
 
 	ProxyConnection(Connection connection, Transformer transformer) {
 		this.connection = connection;
 		this.transformer = transformer;
+		this.statementCache = new StatementCache(StatementCache.DEFAULT_SIZE);
 	}
 
 	@Override
@@ -36,9 +39,45 @@ public class ProxyConnection implements Connection {
 
 	@Override
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
-		String transformedSql = transformer.rewriteQuery(sql);
-		PreparedStatement statement = connection.prepareStatement(transformedSql);
-		return new ProxyPreparedStatement(this, statement, transformer);
+		long generation = transformer.getGeneration();
+		PreparedStatement statement = statementCache.take(sql, generation);
+		if (statement == null) {
+			String transformedSql = transformer.rewriteQuery(sql);
+			statement = connection.prepareStatement(transformedSql);
+		}
+		else {
+			transformer.recordStatementReuse();
+		}
+		return new ProxyPreparedStatement(this, statement, transformer, sql, generation);
+	}
+
+	/**
+	 * Attempts to return a PreparedStatement which was closed by the application to the statement cache.
+	 *
+	 * @param sql The original SQL of the statement.
+	 * @param generation The generation of the table mapping the SQL was rewritten against.
+	 * @param statement The underlying PreparedStatement.
+	 * @return True if the statement was cached, false if it wasn't, in which case the caller must close it.
+	 */
+	boolean releaseStatement(String sql, long generation, PreparedStatement statement) {
+		try {
+			if (connection.isClosed()) {
+				return false;
+			}
+
+			ResultSet resultSet = statement.getResultSet();
+			if (resultSet != null) {
+				resultSet.close();
+			}
+			statement.clearParameters();
+			statement.clearBatch();
+			statement.clearWarnings();
+
+			return statementCache.release(sql, generation, statement);
+		}
+		catch (SQLException e) {
+			return false;
+		}
 	}
 
 	@Override
@@ -76,7 +115,12 @@ public class ProxyConnection implements Connection {
 
 	@Override
 	public void close() throws SQLException {
-		connection.close();
+		try {
+			statementCache.close();
+		}
+		finally {
+			connection.close();
+		}
 	}
 
 	@Override
@@ -29,515 +29,657 @@ public class ProxyPreparedStatement implements PreparedStatement {
 	private final PreparedStatement statement;
 	private final Transformer transformer;
 
+	/**
+	 * The original SQL this statement was prepared with, if its underlying statement may be returned to the
+	 * connection's statement cache upon closing it, or NULL if it must really be closed.
+	 */
+	private final String cacheKey;
+	private final long generation;
+	private boolean reusable;
+	private boolean closed;
+
 	ProxyPreparedStatement(ProxyConnection connection, PreparedStatement statement, Transformer transformer) {
+		this(connection, statement, transformer, null, 0);
+	}
+
+	ProxyPreparedStatement(ProxyConnection connection, PreparedStatement statement, Transformer transformer,
+			String cacheKey, long generation) {
+
 		this.connection = connection;
 		this.statement = statement;
 		this.transformer = transformer;
+		this.cacheKey = cacheKey;
+		this.generation = generation;
+		this.reusable = cacheKey != null;
 	}
 
 	@Override
 	public ResultSet executeQuery() throws SQLException {
+		checkNotClosed();
 		return statement.executeQuery();
 	}
 
 	@Override
 	public int executeUpdate() throws SQLException {
+		checkNotClosed();
 		return statement.executeUpdate();
 	}
 
 	@Override
 	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		checkNotClosed();
 		statement.setNull(parameterIndex, sqlType);
 	}
 
 	@Override
 	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		checkNotClosed();
 		statement.setBoolean(parameterIndex, x);
 	}
 
 	@Override
 	public void setByte(int parameterIndex, byte x) throws SQLException {
+		checkNotClosed();
 		statement.setByte(parameterIndex, x);
 	}
 
 	@Override
 	public void setShort(int parameterIndex, short x) throws SQLException {
+		checkNotClosed();
 		statement.setShort(parameterIndex, x);
 	}
 
 	@Override
 	public void setInt(int parameterIndex, int x) throws SQLException {
+		checkNotClosed();
 		statement.setInt(parameterIndex, x);
 	}
 
 	@Override
 	public void setLong(int parameterIndex, long x) throws SQLException {
+		checkNotClosed();
 		statement.setLong(parameterIndex, x);
 	}
 
 	@Override
 	public void setFloat(int parameterIndex, float x) throws SQLException {
+		checkNotClosed();
 		statement.setFloat(parameterIndex, x);
 	}
 
 	@Override
 	public void setDouble(int parameterIndex, double x) throws SQLException {
+		checkNotClosed();
 		statement.setDouble(parameterIndex, x);
 	}
 
 	@Override
 	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		checkNotClosed();
 		statement.setBigDecimal(parameterIndex, x);
 	}
 
 	@Override
 	public void setString(int parameterIndex, String x) throws SQLException {
+		checkNotClosed();
 		statement.setString(parameterIndex, x);
 	}
 
 	@Override
 	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		checkNotClosed();
 		statement.setBytes(parameterIndex, x);
 	}
 
 	@Override
 	public void setDate(int parameterIndex, Date x) throws SQLException {
+		checkNotClosed();
 		statement.setDate(parameterIndex, x);
 	}
 
 	@Override
 	public void setTime(int parameterIndex, Time x) throws SQLException {
+		checkNotClosed();
 		statement.setTime(parameterIndex, x);
 	}
 
 	@Override
 	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		checkNotClosed();
 		statement.setTimestamp(parameterIndex, x);
 	}
 
 	@Override
 	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		checkNotClosed();
 		statement.setAsciiStream(parameterIndex, x, length);
 	}
 
 	@Override
 	@Deprecated
 	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		checkNotClosed();
 		statement.setUnicodeStream(parameterIndex, x, length);
 	}
 
 	@Override
 	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		checkNotClosed();
 		statement.setBinaryStream(parameterIndex, x, length);
 	}
 
 	@Override
 	public void clearParameters() throws SQLException {
+		checkNotClosed();
 		statement.clearParameters();
 	}
 
 	@Override
 	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		checkNotClosed();
 		statement.setObject(parameterIndex, x, targetSqlType);
 	}
 
 	@Override
 	public void setObject(int parameterIndex, Object x) throws SQLException {
+		checkNotClosed();
 		statement.setObject(parameterIndex, x);
 	}
 
 	@Override
 	public boolean execute() throws SQLException {
+		checkNotClosed();
 		return statement.execute();
 	}
 
 	@Override
 	public void addBatch() throws SQLException {
+		checkNotClosed();
 		statement.addBatch();
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+		checkNotClosed();
 		statement.setCharacterStream(parameterIndex, reader, length);
 	}
 
 	@Override
 	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		checkNotClosed();
 		statement.setRef(parameterIndex, x);
 	}
 
 	@Override
 	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		checkNotClosed();
 		statement.setBlob(parameterIndex, x);
 	}
 
 	@Override
 	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		checkNotClosed();
 		statement.setClob(parameterIndex, x);
 	}
 
 	@Override
 	public void setArray(int parameterIndex, Array x) throws SQLException {
+		checkNotClosed();
 		statement.setArray(parameterIndex, x);
 	}
 
 	@Override
 	public ResultSetMetaData getMetaData() throws SQLException {
+		checkNotClosed();
 		return statement.getMetaData();
 	}
 
 	@Override
 	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		checkNotClosed();
 		statement.setDate(parameterIndex, x, cal);
 	}
 
 	@Override
 	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		checkNotClosed();
 		statement.setTime(parameterIndex, x, cal);
 	}
 
 	@Override
 	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		checkNotClosed();
 		statement.setTimestamp(parameterIndex, x, cal);
 	}
 
 	@Override
 	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		checkNotClosed();
 		statement.setNull(parameterIndex, sqlType, typeName);
 	}
 
 	@Override
 	public void setURL(int parameterIndex, URL x) throws SQLException {
+		checkNotClosed();
 		statement.setURL(parameterIndex, x);
 	}
 
 	@Override
 	public ParameterMetaData getParameterMetaData() throws SQLException {
+		checkNotClosed();
 		return statement.getParameterMetaData();
 	}
 
 	@Override
 	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		checkNotClosed();
 		statement.setRowId(parameterIndex, x);
 	}
 
 	@Override
 	public void setNString(int parameterIndex, String value) throws SQLException {
+		checkNotClosed();
 		statement.setNString(parameterIndex, value);
 	}
 
 	@Override
 	public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+		checkNotClosed();
 		statement.setNCharacterStream(parameterIndex, value, length);
 	}
 
 	@Override
 	public void setNClob(int parameterIndex, NClob value) throws SQLException {
+		checkNotClosed();
 		statement.setNClob(parameterIndex, value);
 	}
 
 	@Override
 	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		checkNotClosed();
 		statement.setClob(parameterIndex, reader, length);
 	}
 
 	@Override
 	public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+		checkNotClosed();
 		statement.setBlob(parameterIndex, inputStream, length);
 	}
 
 	@Override
 	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		checkNotClosed();
 		statement.setNClob(parameterIndex, reader, length);
 	}
 
 	@Override
 	public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+		checkNotClosed();
 		statement.setSQLXML(parameterIndex, xmlObject);
 	}
 
 	@Override
 	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		checkNotClosed();
 		statement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
 	}
 
 	@Override
 	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		checkNotClosed();
 		statement.setAsciiStream(parameterIndex, x, length);
 	}
 
 	@Override
 	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		checkNotClosed();
 		statement.setBinaryStream(parameterIndex, x, length);
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		checkNotClosed();
 		statement.setCharacterStream(parameterIndex, reader, length);
 	}
 
 	@Override
 	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		checkNotClosed();
 		statement.setAsciiStream(parameterIndex, x);
 	}
 
 	@Override
 	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		checkNotClosed();
 		statement.setBinaryStream(parameterIndex, x);
 	}
 
 	@Override
 	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		checkNotClosed();
 		statement.setCharacterStream(parameterIndex, reader);
 	}
 
 	@Override
 	public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+		checkNotClosed();
 		statement.setNCharacterStream(parameterIndex, value);
 	}
 
 	@Override
 	public void setClob(int parameterIndex, Reader reader) throws SQLException {
+		checkNotClosed();
 		statement.setClob(parameterIndex, reader);
 	}
 
 	@Override
 	public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+		checkNotClosed();
 		statement.setBlob(parameterIndex, inputStream);
 	}
 
 	@Override
 	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+		checkNotClosed();
 		statement.setNClob(parameterIndex, reader);
 	}
 
 	@Override
 	public ResultSet executeQuery(String sql) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.executeQuery(transformedSql);
 	}
 
 	@Override
 	public int executeUpdate(String sql) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.executeUpdate(transformedSql);
 	}
 
 	@Override
 	public void close() throws SQLException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		if (reusable && connection.releaseStatement(cacheKey, generation, statement)) {
+			return;
+		}
 		statement.close();
 	}
 
 	@Override
 	public int getMaxFieldSize() throws SQLException {
+		checkNotClosed();
 		return statement.getMaxFieldSize();
 	}
 
 	@Override
 	public void setMaxFieldSize(int max) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setMaxFieldSize(max);
 	}
 
 	@Override
 	public int getMaxRows() throws SQLException {
+		checkNotClosed();
 		return statement.getMaxRows();
 	}
 
 	@Override
 	public void setMaxRows(int max) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setMaxRows(max);
 	}
 
 	@Override
 	public void setEscapeProcessing(boolean enable) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setEscapeProcessing(enable);
 	}
 
 	@Override
 	public int getQueryTimeout() throws SQLException {
+		checkNotClosed();
 		return statement.getQueryTimeout();
 	}
 
 	@Override
 	public void setQueryTimeout(int seconds) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setQueryTimeout(seconds);
 	}
 
 	@Override
 	public void cancel() throws SQLException {
+		checkNotClosed();
 		statement.cancel();
 	}
 
 	@Override
 	public SQLWarning getWarnings() throws SQLException {
+		checkNotClosed();
 		return statement.getWarnings();
 	}
 
 	@Override
 	public void clearWarnings() throws SQLException {
+		checkNotClosed();
 		statement.clearWarnings();
 	}
 
 	@Override
 	public void setCursorName(String name) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setCursorName(name);
 	}
 
 	@Override
 	public boolean execute(String sql) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.execute(transformedSql);
 	}
 
 	@Override
 	public ResultSet getResultSet() throws SQLException {
+		checkNotClosed();
 		return statement.getResultSet();
 	}
 
 	@Override
 	public int getUpdateCount() throws SQLException {
+		checkNotClosed();
 		return statement.getUpdateCount();
 	}
 
 	@Override
 	public boolean getMoreResults() throws SQLException {
+		checkNotClosed();
 		return statement.getMoreResults();
 	}
 
 	@Override
 	public void setFetchDirection(int direction) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setFetchDirection(direction);
 	}
 
 	@Override
 	public int getFetchDirection() throws SQLException {
+		checkNotClosed();
 		return statement.getFetchDirection();
 	}
 
 	@Override
 	public void setFetchSize(int rows) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setFetchSize(rows);
 	}
 
 	@Override
 	public int getFetchSize() throws SQLException {
+		checkNotClosed();
 		return statement.getFetchSize();
 	}
 
 	@Override
 	public int getResultSetConcurrency() throws SQLException {
+		checkNotClosed();
 		return statement.getResultSetConcurrency();
 	}
 
 	@Override
 	public int getResultSetType() throws SQLException {
+		checkNotClosed();
 		return statement.getResultSetType();
 	}
 
 	@Override
 	public void addBatch(String sql) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		statement.addBatch(transformedSql);
 	}
 
 	@Override
 	public void clearBatch() throws SQLException {
+		checkNotClosed();
 		statement.clearBatch();
 	}
 
 	@Override
 	public int[] executeBatch() throws SQLException {
+		checkNotClosed();
 		return statement.executeBatch();
 	}
 
 	@Override
 	public Connection getConnection() throws SQLException {
+		checkNotClosed();
 		return connection;
 	}
 
 	@Override
 	public boolean getMoreResults(int current) throws SQLException {
+		checkNotClosed();
 		return statement.getMoreResults(current);
 	}
 
 	@Override
 	public ResultSet getGeneratedKeys() throws SQLException {
+		checkNotClosed();
 		return statement.getGeneratedKeys();
 	}
 
 	@Override
 	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.executeUpdate(transformedSql, autoGeneratedKeys);
 	}
 
 	@Override
 	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.executeUpdate(transformedSql, columnIndexes);
 	}
 
 	@Override
 	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.executeUpdate(transformedSql, columnNames);
 	}
 
 	@Override
 	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.execute(transformedSql, autoGeneratedKeys);
 	}
 
 	@Override
 	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.execute(transformedSql, columnIndexes);
 	}
 
 	@Override
 	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		checkNotClosed();
 		String transformedSql = transformer.rewriteQuery(sql);
 		return statement.execute(transformedSql, columnNames);
 	}
 
 	@Override
 	public int getResultSetHoldability() throws SQLException {
+		checkNotClosed();
 		return statement.getResultSetHoldability();
 	}
 
 	@Override
 	public boolean isClosed() throws SQLException {
-		return statement.isClosed();
+		return closed || statement.isClosed();
 	}
 
 	@Override
 	public void setPoolable(boolean poolable) throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.setPoolable(poolable);
 	}
 
 	@Override
 	public boolean isPoolable() throws SQLException {
+		checkNotClosed();
 		return statement.isPoolable();
 	}
 
 	@Override
 	public void closeOnCompletion() throws SQLException {
+		checkNotClosed();
+		reusable = false;
 		statement.closeOnCompletion();
 	}
 
 	@Override
 	public boolean isCloseOnCompletion() throws SQLException {
+		checkNotClosed();
 		return statement.isCloseOnCompletion();
 	}
 
 	@Override
 	public <T> T unwrap(Class<T> iface) throws SQLException {
+		checkNotClosed();
 		return statement.unwrap(iface);
 	}
 
 	@Override
 	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		checkNotClosed();
 		return statement.isWrapperFor(iface);
 	}
+
+	/**
+	 * Ensures a statement which was closed by the application can no longer be executed, since its underlying
+	 * statement may already have been handed out again by the connection's statement cache.
+	 */
+	private void checkNotClosed() throws SQLException {
+		if (closed) {
+			throw new SQLException("This statement has been closed.");
+		}
+	}
 }
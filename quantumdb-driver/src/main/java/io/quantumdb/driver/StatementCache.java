@@ -0,0 +1,117 @@
+package io.quantumdb.driver;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A per-connection, size-bounded cache of idle PreparedStatements, keyed by the original (not yet rewritten) SQL.
+ * When the application closes a ProxyPreparedStatement its underlying PreparedStatement is parked here instead of
+ * being closed, so that preparing the same SQL again on the same connection reuses the rewritten query as well as
+ * the server-side prepared statement. Each statement is handed out to at most one ProxyPreparedStatement at a time.
+ *
+ * Every entry records the generation of the table mapping its SQL was rewritten against. Entries which were
+ * rewritten against an outdated table mapping are closed instead of being reused.
+ */
+class StatementCache {
+
+	static final int DEFAULT_SIZE = 64;
+
+	private static class Entry {
+
+		private final PreparedStatement statement;
+		private final long generation;
+
+		private Entry(PreparedStatement statement, long generation) {
+			this.statement = statement;
+			this.generation = generation;
+		}
+
+	}
+
+	private final int maximumSize;
+	private final LinkedHashMap<String, Entry> idleStatements;
+	private boolean closed;
+
+	StatementCache(int maximumSize) {
+		this.maximumSize = maximumSize;
+		this.idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Takes an idle PreparedStatement for the specified SQL out of the cache.
+	 *
+	 * @param sql The original SQL of the statement.
+	 * @param generation The current generation of the table mapping.
+	 * @return The idle PreparedStatement, or NULL if no reusable statement is present in the cache.
+	 * @throws SQLException In case an outdated statement could not be closed.
+	 */
+	synchronized PreparedStatement take(String sql, long generation) throws SQLException {
+		Entry entry = idleStatements.remove(sql);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.generation != generation) {
+			entry.statement.close();
+			return null;
+		}
+		return entry.statement;
+	}
+
+	/**
+	 * Returns a PreparedStatement which is no longer in use to the cache.
+	 *
+	 * @param sql The original SQL of the statement.
+	 * @param generation The generation of the table mapping the SQL was rewritten against.
+	 * @param statement The PreparedStatement to return to the cache.
+	 * @return True if the statement was cached, false if it wasn't, in which case the caller must close it.
+	 * @throws SQLException In case an evicted statement could not be closed.
+	 */
+	synchronized boolean release(String sql, long generation, PreparedStatement statement) throws SQLException {
+		if (closed || maximumSize <= 0 || idleStatements.containsKey(sql)) {
+			return false;
+		}
+
+		idleStatements.put(sql, new Entry(statement, generation));
+
+		if (idleStatements.size() > maximumSize) {
+			Iterator<Map.Entry<String, Entry>> iterator = idleStatements.entrySet().iterator();
+			Entry eldest = iterator.next().getValue();
+			iterator.remove();
+			eldest.statement.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Closes all idle statements, and prevents any further statements from being cached.
+	 *
+	 * @throws SQLException In case one or more idle statements could not be closed.
+	 */
+	synchronized void close() throws SQLException {
+		closed = true;
+
+		SQLException exception = null;
+		for (Entry entry : idleStatements.values()) {
+			try {
+				entry.statement.close();
+			}
+			catch (SQLException e) {
+				if (exception == null) {
+					exception = e;
+				}
+				else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		idleStatements.clear();
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+}
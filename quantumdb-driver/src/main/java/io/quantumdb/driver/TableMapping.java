@@ -0,0 +1,70 @@
+package io.quantumdb.driver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An immutable mapping of table names to ref ids for a specific version, together with a precomputed reverse index
+ * of ref ids to table names. Both directions can be resolved in constant time, and a single instance is shared by
+ * all connections (and their metadata result sets) which use the same version.
+ */
+class TableMapping {
+
+	static final TableMapping EMPTY = new TableMapping(ImmutableMap.of(), ImmutableMap.of());
+
+	static TableMapping of(Map<String, String> tableMapping) {
+		if (tableMapping.isEmpty()) {
+			return EMPTY;
+		}
+
+		ImmutableMap<String, String> refIds = ImmutableMap.copyOf(tableMapping);
+		Map<String, String> tableNames = new HashMap<>();
+		refIds.forEach((tableName, refId) -> tableNames.putIfAbsent(refId, tableName));
+		return new TableMapping(refIds, ImmutableMap.copyOf(tableNames));
+	}
+
+	private final ImmutableMap<String, String> refIds;
+	private final ImmutableMap<String, String> tableNames;
+
+	private TableMapping(ImmutableMap<String, String> refIds, ImmutableMap<String, String> tableNames) {
+		this.refIds = refIds;
+		this.tableNames = tableNames;
+	}
+
+	/**
+	 * @param tableName The name of the table as it is known to the application.
+	 * @return The ref id of the physical table, or NULL if no such table name is mapped.
+	 */
+	String getRefId(String tableName) {
+		return refIds.get(tableName);
+	}
+
+	/**
+	 * @param refId The ref id of the physical table.
+	 * @return The name of the table as it is known to the application, or NULL if the ref id isn't mapped.
+	 */
+	String getTableName(String refId) {
+		return tableNames.get(refId);
+	}
+
+	boolean containsRefId(String refId) {
+		return tableNames.containsKey(refId);
+	}
+
+	Map<String, String> asMap() {
+		return refIds;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof TableMapping && refIds.equals(((TableMapping) other).refIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return refIds.hashCode();
+	}
+
+}
@@ -0,0 +1,87 @@
+package io.quantumdb.driver;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Listens on a dedicated connection for notifications which the QuantumDB backend sends whenever the table mapping
+ * of a version changes, and instructs the TableMappingRegistry to reload the table mapping of that version. This
+ * ensures long-lived (pooled) connections pick up new table mappings without having to be recycled.
+ */
+@Slf4j
+class TableMappingListener implements Runnable {
+
+	/**
+	 * Must match the channel used by io.quantumdb.core.versioning.Backend in the quantumdb-postgresql module.
+	 */
+	static final String REF_VERSIONS_CHANNEL = "quantumdb_ref_versions";
+
+	private static final int POLL_TIMEOUT_MILLIS = 10_000;
+	private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+	static TableMappingListener start(String url, TableMappingRegistry registry,
+			TableMappingRegistry.ConnectionFactory connectionFactory) {
+
+		TableMappingListener listener = new TableMappingListener(url, registry, connectionFactory);
+		Thread thread = new Thread(listener, "quantumdb-table-mapping-listener");
+		thread.setDaemon(true);
+		thread.start();
+		return listener;
+	}
+
+	private final String url;
+	private final TableMappingRegistry registry;
+	private final TableMappingRegistry.ConnectionFactory connectionFactory;
+
+	private TableMappingListener(String url, TableMappingRegistry registry,
+			TableMappingRegistry.ConnectionFactory connectionFactory) {
+
+		this.url = url;
+		this.registry = registry;
+		this.connectionFactory = connectionFactory;
+	}
+
+	@Override
+	public void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			try (Connection connection = connectionFactory.connect()) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("LISTEN " + REF_VERSIONS_CHANNEL + ";");
+				}
+
+				// Catch up on any notifications which might have been missed while not listening.
+				registry.refresh(url, connection);
+
+				PGConnection pgConnection = connection.unwrap(PGConnection.class);
+				while (!Thread.currentThread().isInterrupted()) {
+					PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+					if (notifications == null) {
+						continue;
+					}
+
+					for (PGNotification notification : notifications) {
+						log.debug("Received notification of changed table mapping for version: {}",
+								notification.getParameter());
+
+						registry.refresh(url, notification.getParameter(), connection);
+					}
+				}
+			}
+			catch (SQLException e) {
+				log.warn("Could not listen for table mapping changes, retrying in {} ms.", RECONNECT_DELAY_MILLIS, e);
+				try {
+					Thread.sleep(RECONNECT_DELAY_MILLIS);
+				}
+				catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+}
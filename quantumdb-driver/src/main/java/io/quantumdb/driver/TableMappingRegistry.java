@@ -0,0 +1,184 @@
+package io.quantumdb.driver;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.quantumdb.query.rewriter.PostgresqlQueryRewriter;
+
+/**
+ * Keeps track of one shared Transformer per database and version. The table mapping of a version is only queried
+ * from the database when the first connection for that database and version is created. All subsequent connections
+ * reuse the same immutable table mapping, query rewriter and rewrite cache.
+ *
+ * For every database with connections pinned to a version, a TableMappingListener is started which refreshes the
+ * table mappings of the shared Transformers whenever the QuantumDB backend signals they have changed.
+ */
+class TableMappingRegistry {
+
+	interface ConnectionFactory {
+		Connection connect() throws SQLException;
+	}
+
+	private static class Key {
+
+		private final String url;
+		private final String version;
+
+		private Key(String url, String version) {
+			this.url = url;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return url.equals(key.url) && version.equals(key.version);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(url, version);
+		}
+
+	}
+
+	private final Cache<Key, Transformer> transformers;
+	private final ConcurrentMap<String, TableMappingListener> listeners;
+	private volatile DriverMetrics metrics;
+
+	TableMappingRegistry() {
+		this.transformers = CacheBuilder.newBuilder().build();
+		this.listeners = new ConcurrentHashMap<>();
+		this.metrics = DriverMetrics.NO_OP;
+	}
+
+	/**
+	 * Instructs all current and future Transformers to report to the specified DriverMetrics.
+	 *
+	 * @param metrics The DriverMetrics to report to.
+	 */
+	void setMetrics(DriverMetrics metrics) {
+		this.metrics = metrics;
+		transformers.asMap().values().forEach(transformer -> transformer.setMetrics(metrics));
+	}
+
+	/**
+	 * Returns the Transformer for the specified database and version. If no such Transformer exists yet, its table
+	 * mapping is loaded using the specified connection. Concurrent callers for the same database and version wait
+	 * for this single load to complete, rather than each querying the table mapping themselves.
+	 *
+	 * @param url The JDBC URL of the database.
+	 * @param version The version to which the connection is pinned, or NULL if it isn't pinned to any version.
+	 * @param connection The connection to use to load the table mapping, if it hasn't been loaded yet.
+	 * @param connectionFactory Creates the dedicated connection used to listen for table mapping changes.
+	 * @return The shared Transformer for the specified database and version.
+	 * @throws SQLException In case the table mapping could not be loaded.
+	 */
+	Transformer getTransformer(String url, String version, Connection connection,
+			ConnectionFactory connectionFactory) throws SQLException {
+
+		Key key = new Key(url, version == null ? "" : version);
+		Transformer transformer;
+		try {
+			transformer = transformers.get(key, () -> {
+				Map<String, String> tableMapping = loadTableMapping(connection, version);
+				Transformer created = new Transformer(version, new PostgresqlQueryRewriter(), tableMapping,
+						Transformer.DEFAULT_REWRITE_CACHE_SIZE);
+
+				created.setMetrics(metrics);
+				return created;
+			});
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException("Could not load the table mapping of version: " + version, e.getCause());
+		}
+
+		if (version != null && !version.isEmpty()) {
+			listeners.computeIfAbsent(url, u -> TableMappingListener.start(u, this, connectionFactory));
+		}
+		return transformer;
+	}
+
+	/**
+	 * Reloads the table mappings of all versions of the specified database which are currently in use.
+	 *
+	 * @param url The JDBC URL of the database.
+	 * @param connection The connection to use to load the table mappings.
+	 * @throws SQLException In case a table mapping could not be loaded.
+	 */
+	void refresh(String url, Connection connection) throws SQLException {
+		for (Key key : transformers.asMap().keySet()) {
+			if (key.url.equals(url) && !key.version.isEmpty()) {
+				refresh(url, key.version, connection);
+			}
+		}
+	}
+
+	/**
+	 * Reloads the table mapping of the specified version, if that version is currently in use.
+	 *
+	 * @param url The JDBC URL of the database.
+	 * @param version The version whose table mapping changed.
+	 * @param connection The connection to use to load the table mapping.
+	 * @throws SQLException In case the table mapping could not be loaded.
+	 */
+	void refresh(String url, String version, Connection connection) throws SQLException {
+		if (version == null || version.isEmpty()) {
+			return;
+		}
+
+		Transformer transformer = transformers.getIfPresent(new Key(url, version));
+		if (transformer != null) {
+			boolean changed = transformer.setTableMapping(loadTableMapping(connection, version));
+			metrics.recordTableMappingRefresh(version, changed);
+		}
+	}
+
+	private static Map<String, String> loadTableMapping(Connection connection, String version) throws SQLException {
+		Map<String, String> tableMapping = new HashMap<>();
+		if (version == null || version.isEmpty()) {
+			return tableMapping;
+		}
+
+		String query = new StringBuilder()
+				.append("SELECT ref_id, table_name ")
+				.append("FROM quantumdb.ref_versions ")
+				.append("WHERE version_id = ?;")
+				.toString();
+
+		try (PreparedStatement statement = connection.prepareStatement(query)) {
+			statement.setString(1, version);
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					String refId = resultSet.getString("ref_id");
+					String tableName = resultSet.getString("table_name");
+					tableMapping.put(tableName, refId);
+				}
+			}
+		}
+
+		return tableMapping;
+	}
+
+}
@@ -1,58 +1,157 @@
 package io.quantumdb.driver;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import io.quantumdb.query.rewriter.QueryRewriter;
 
 class Transformer {
 
+	static final int DEFAULT_REWRITE_CACHE_SIZE = 1_000;
+
+	/**
+	 * Identifies a rewritten query by its original SQL and the generation of the table mapping it was rewritten
+	 * against, so that entries which were rewritten using an outdated table mapping can never be served.
+	 */
+	private static class RewriteKey {
+
+		private final String query;
+		private final long generation;
+
+		private RewriteKey(String query, long generation) {
+			this.query = query;
+			this.generation = generation;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof RewriteKey)) {
+				return false;
+			}
+			RewriteKey key = (RewriteKey) other;
+			return generation == key.generation && Objects.equals(query, key.query);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Objects.hashCode(query) + Long.hashCode(generation);
+		}
+
+	}
+
+	private final String version;
 	private final QueryRewriter queryRewriter;
-	private final Map<String, String> tableMapping;
+	private volatile TableMapping tableMapping;
+	private final Cache<RewriteKey, String> rewriteCache;
+	private volatile long generation;
+	private volatile DriverMetrics metrics;
+
+	Transformer(QueryRewriter queryRewriter, Map<String, String> tableMapping) {
+		this(null, queryRewriter, tableMapping, DEFAULT_REWRITE_CACHE_SIZE);
+	}
+
+	Transformer(QueryRewriter queryRewriter, Map<String, String> tableMapping, int rewriteCacheSize) {
+		this(null, queryRewriter, tableMapping, rewriteCacheSize);
+	}
 
-	Transformer(Connection connection, QueryRewriter queryRewriter, String version) throws SQLException {
-		this.tableMapping = new HashMap<>();
+	Transformer(String version, QueryRewriter queryRewriter, Map<String, String> tableMapping,
+			int rewriteCacheSize) {
+
+		this.version = version;
+		this.metrics = DriverMetrics.NO_OP;
+		this.tableMapping = TableMapping.of(tableMapping);
 		this.queryRewriter = queryRewriter;
+		this.rewriteCache = CacheBuilder.newBuilder()
+				.maximumSize(rewriteCacheSize)
+				.recordStats()
+				.build();
+
+		queryRewriter.setTableMapping(this.tableMapping.asMap());
+	}
 
-		if (version != null && !version.isEmpty()) {
-			String query = new StringBuilder()
-					.append("SELECT ref_id, table_name ")
-					.append("FROM quantumdb.ref_versions ")
-					.append("WHERE version_id = ?;")
-					.toString();
-
-			try (PreparedStatement statement = connection.prepareStatement(query)) {
-				statement.setString(1, version);
-
-				try (ResultSet resultSet = statement.executeQuery()) {
-					while (resultSet.next()) {
-						String refId = resultSet.getString("ref_id");
-						String tableName = resultSet.getString("table_name");
-						tableMapping.put(tableName, refId);
-					}
-				}
+	/**
+	 * Atomically replaces the table mapping used to rewrite queries. Any queries which were rewritten using the
+	 * previous table mapping are evicted from the rewrite cache, and can no longer be served from it.
+	 *
+	 * @param newTableMapping The new table mapping to adopt.
+	 * @return True if the new table mapping differs from the one in use, false otherwise.
+	 */
+	boolean setTableMapping(Map<String, String> newTableMapping) {
+		TableMapping tableMapping = TableMapping.of(newTableMapping);
+		synchronized (this) {
+			if (tableMapping.equals(this.tableMapping)) {
+				return false;
 			}
+
+			queryRewriter.setTableMapping(tableMapping.asMap());
+			this.tableMapping = tableMapping;
+			this.generation++;
 		}
+		rewriteCache.invalidateAll();
+		return true;
+	}
+
+	void setMetrics(DriverMetrics metrics) {
+		this.metrics = metrics;
+	}
 
-		queryRewriter.setTableMapping(tableMapping);
+	long getGeneration() {
+		return generation;
 	}
 
-	Map<String, String> getTableMappings() {
-		Map<String, String> result = new HashMap<>(tableMapping.size());
-		result.putAll(tableMapping);
-		return result;
+	/**
+	 * @return The immutable table mapping currently in use. This is shared, and must therefore not be copied.
+	 */
+	TableMapping getTableMapping() {
+		return tableMapping;
 	}
 
 	String getRefId(String tableName) {
-		return tableMapping.get(tableName);
+		return tableMapping.getRefId(tableName);
 	}
 
 	String rewriteQuery(String query) throws SQLException {
-		return queryRewriter.rewrite(query);
+		DriverMetrics metrics = this.metrics;
+		boolean measure = metrics != DriverMetrics.NO_OP;
+		long start = measure ? System.nanoTime() : 0;
+
+		RewriteKey key = new RewriteKey(query, generation);
+		String rewrittenQuery = rewriteCache.getIfPresent(key);
+		boolean cacheHit = rewrittenQuery != null;
+		if (!cacheHit) {
+			rewrittenQuery = queryRewriter.rewrite(query);
+			rewriteCache.put(key, rewrittenQuery);
+		}
+
+		if (measure) {
+			metrics.recordRewrite(version, cacheHit, System.nanoTime() - start);
+		}
+		return rewrittenQuery;
+	}
+
+	/**
+	 * Reports a statement whose previously rewritten SQL was reused from a connection's statement cache, and
+	 * therefore never passed through {@link #rewriteQuery(String)}.
+	 */
+	void recordStatementReuse() {
+		DriverMetrics metrics = this.metrics;
+		if (metrics != DriverMetrics.NO_OP) {
+			metrics.recordStatementReuse(version);
+		}
+	}
+
+	/**
+	 * @return The hit, miss and eviction counters of the cache holding previously rewritten queries.
+	 */
+	CacheStats getRewriteCacheStats() {
+		return rewriteCache.stats();
 	}
 
 }
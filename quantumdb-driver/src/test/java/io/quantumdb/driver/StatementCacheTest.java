@@ -0,0 +1,148 @@
+package io.quantumdb.driver;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import com.google.common.collect.ImmutableMap;
+import io.quantumdb.query.rewriter.QueryRewriter;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCacheTest {
+
+	private StatementCache cache;
+
+	@Before
+	public void setUp() {
+		this.cache = new StatementCache(2);
+	}
+
+	@Test
+	public void testThatReleasedStatementIsReused() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+
+		assertTrue(cache.release("SELECT * FROM users", 0, statement));
+		assertSame(statement, cache.take("SELECT * FROM users", 0));
+		assertNull(cache.take("SELECT * FROM users", 0));
+		verify(statement, never()).close();
+	}
+
+	@Test
+	public void testThatStatementOfOutdatedGenerationIsClosed() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+
+		cache.release("SELECT * FROM users", 0, statement);
+
+		assertNull(cache.take("SELECT * FROM users", 1));
+		verify(statement).close();
+	}
+
+	@Test
+	public void testThatLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+		PreparedStatement first = mock(PreparedStatement.class);
+		PreparedStatement second = mock(PreparedStatement.class);
+		PreparedStatement third = mock(PreparedStatement.class);
+
+		cache.release("SELECT 1", 0, first);
+		cache.release("SELECT 2", 0, second);
+		cache.release("SELECT 3", 0, third);
+
+		verify(first).close();
+		assertNull(cache.take("SELECT 1", 0));
+		assertSame(second, cache.take("SELECT 2", 0));
+		assertSame(third, cache.take("SELECT 3", 0));
+	}
+
+	@Test
+	public void testThatDuplicateStatementIsNotCached() throws SQLException {
+		cache.release("SELECT 1", 0, mock(PreparedStatement.class));
+		assertFalse(cache.release("SELECT 1", 0, mock(PreparedStatement.class)));
+	}
+
+	@Test
+	public void testThatClosingCacheClosesIdleStatements() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+		cache.release("SELECT 1", 0, statement);
+
+		cache.close();
+
+		verify(statement).close();
+		assertFalse(cache.release("SELECT 2", 0, mock(PreparedStatement.class)));
+	}
+
+	@Test
+	public void testThatReusedStatementIsNotReportedAsRewrite() throws SQLException {
+		Connection connection = mock(Connection.class);
+		when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+
+		QueryRewriter queryRewriter = mock(QueryRewriter.class);
+		when(queryRewriter.rewrite(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		DriverMetrics metrics = mock(DriverMetrics.class);
+		Transformer transformer = new Transformer("v1", queryRewriter, ImmutableMap.of(), 16);
+		transformer.setMetrics(metrics);
+
+		ProxyConnection proxyConnection = new ProxyConnection(connection, transformer);
+		proxyConnection.prepareStatement("SELECT * FROM users WHERE id = ?").close();
+		proxyConnection.prepareStatement("SELECT * FROM users WHERE id = ?").close();
+
+		verify(metrics).recordRewrite(eq("v1"), eq(false), anyLong());
+		verify(metrics).recordStatementReuse("v1");
+		verify(metrics, times(1)).recordRewrite(anyString(), anyBoolean(), anyLong());
+	}
+
+	@Test
+	public void testThatClosedProxyStatementCannotTouchReusedStatement() throws SQLException {
+		Connection connection = mock(Connection.class);
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+		Transformer transformer = mock(Transformer.class);
+		when(transformer.rewriteQuery(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		ProxyConnection proxyConnection = new ProxyConnection(connection, transformer);
+		PreparedStatement stale = proxyConnection.prepareStatement("SELECT * FROM users WHERE id = ?");
+		stale.close();
+
+		PreparedStatement current = proxyConnection.prepareStatement("SELECT * FROM users WHERE id = ?");
+		current.setLong(1, 1L);
+
+		try {
+			stale.setLong(1, 2L);
+			fail("Expected the closed statement to reject the parameter.");
+		}
+		catch (SQLException e) {
+			// Expected.
+		}
+		try {
+			stale.cancel();
+			fail("Expected the closed statement to reject the cancellation.");
+		}
+		catch (SQLException e) {
+			// Expected.
+		}
+
+		verify(statement).setLong(1, 1L);
+		verify(statement, never()).setLong(1, 2L);
+		verify(statement, never()).cancel();
+		assertTrue(stale.isClosed());
+		assertFalse(current.isClosed());
+	}
+
+}
@@ -0,0 +1,93 @@
+package io.quantumdb.core.planner;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Determines the size of the next batch of records to copy, and how long to pause before copying it. The batch size
+ * converges towards the size which can be copied in the configured target batch duration. Whenever the database
+ * reports too much replica lag, too many lock waits, or too many active sessions, the batch size is halved and the
+ * pause is doubled until the pressure subsides.
+ */
+@Slf4j
+class AdaptiveBatchController {
+
+	private static final double TOLERANCE = 0.2;
+	private static final double MAX_GROWTH = 2.0;
+	private static final double MAX_SHRINKAGE = 0.5;
+	private static final long MIN_BACK_OFF_PAUSE_MILLIS = 100;
+
+	private final MigrationSettings settings;
+	private long batchSize;
+	private long pauseMillis;
+
+	AdaptiveBatchController(MigrationSettings settings) {
+		this.settings = settings;
+		this.batchSize = clampBatchSize(settings.getInitialBatchSize());
+		this.pauseMillis = Math.max(0, settings.getInitialPauseMillis());
+	}
+
+	long getBatchSize() {
+		return batchSize;
+	}
+
+	long getPauseMillis() {
+		return pauseMillis;
+	}
+
+	/**
+	 * Adjusts the batch size and pause based on the duration of the last batch and the current database load.
+	 *
+	 * @param durationMillis The time it took to copy the last batch.
+	 * @param load The load of the database after copying the last batch.
+	 */
+	void update(long durationMillis, DatabaseLoad load) {
+		if (isUnderPressure(load)) {
+			batchSize = clampBatchSize(batchSize / 2);
+			pauseMillis = clampPause(Math.max(MIN_BACK_OFF_PAUSE_MILLIS, pauseMillis * 2));
+			log.info("Database is under pressure: {}, backing off to batches of: {} records with pauses of: {} ms",
+					load, batchSize, pauseMillis);
+			return;
+		}
+
+		long target = settings.getTargetBatchMillis();
+		if (target <= 0) {
+			pauseMillis = pauseMillis / 2;
+			return;
+		}
+
+		double ratio = (double) target / Math.max(1, durationMillis);
+		if (ratio > 1 + TOLERANCE || ratio < 1 - TOLERANCE) {
+			ratio = Math.min(MAX_GROWTH, Math.max(MAX_SHRINKAGE, ratio));
+			batchSize = clampBatchSize(Math.round(batchSize * ratio));
+		}
+
+		if (durationMillis > target * (1 + TOLERANCE) && batchSize == clampBatchSize(0)) {
+			// Even the smallest batch takes too long, so leave the database some breathing room.
+			pauseMillis = clampPause(Math.max(MIN_BACK_OFF_PAUSE_MILLIS, pauseMillis * 2));
+		}
+		else {
+			pauseMillis = pauseMillis / 2;
+		}
+	}
+
+	private boolean isUnderPressure(DatabaseLoad load) {
+		return exceeds(load.getReplicaLagMillis(), settings.getMaxReplicaLagMillis())
+				|| exceeds(load.getLockWaits(), settings.getMaxLockWaits())
+				|| exceeds(load.getActiveBackends(), settings.getMaxActiveBackends());
+	}
+
+	private boolean exceeds(long value, long threshold) {
+		return threshold > 0 && value > threshold;
+	}
+
+	private long clampBatchSize(long size) {
+		long min = Math.max(1, settings.getMinBatchSize());
+		long max = Math.max(min, settings.getMaxBatchSize());
+		return Math.min(max, Math.max(min, size));
+	}
+
+	private long clampPause(long pause) {
+		return Math.min(Math.max(0, settings.getMaxPauseMillis()), pause);
+	}
+
+}
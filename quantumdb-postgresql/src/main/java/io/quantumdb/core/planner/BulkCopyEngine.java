@@ -0,0 +1,331 @@
+package io.quantumdb.core.planner;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.quantumdb.core.backends.Backend;
+import io.quantumdb.core.schema.definitions.Table;
+import io.quantumdb.core.utils.QueryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGStatement;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Copies batches of records by streaming them out of the source table and into the target table using the COPY
+ * protocol in binary format, which avoids the per-row overhead of the migrator functions. Since COPY cannot skip
+ * records which already exist in the target table, this engine falls back to the specified CopyEngine for the
+ * remainder of the key range as soon as a batch conflicts with records which were already present.
+ *
+ * The records are read using COPY ... TO STDOUT on a second connection of its own, and are piped directly into the
+ * COPY ... FROM STDIN on the connection of the caller through a bounded buffer, so that a batch is never held in
+ * memory as a whole, regardless of the size of its records.
+ */
+@Slf4j
+class BulkCopyEngine implements CopyEngine {
+
+	private static final String UNIQUE_VIOLATION = "23505";
+	private static final int PIPE_BUFFER_SIZE = 1024 * 1024;
+
+	private final Backend backend;
+	private final Table source;
+	private final Table target;
+	private final IdentityCursor cursor;
+	private final Map<String, String> values;
+	private final Object[] upper;
+	private final CopyEngine fallback;
+	private final Map<String, PreparedStatement> statements;
+	private boolean streaming = true;
+
+	private Connection copyOutConnection;
+	private ExecutorService copyOutExecutor;
+
+	/**
+	 * @param backend The backend to open the connection with, from which the records are read.
+	 * @param source The table to copy records from.
+	 * @param target The table to copy records into.
+	 * @param cursor The IdentityCursor describing the identity columns of the source table.
+	 * @param values The expressions (in terms of the source table) producing the values of the target columns.
+	 * @param upper The identity of the last record in the key range which is being copied.
+	 * @param fallback The CopyEngine to use once records in the target table conflict with the copied records.
+	 */
+	BulkCopyEngine(Backend backend, Table source, Table target, IdentityCursor cursor,
+			Map<String, String> values, Object[] upper, CopyEngine fallback) {
+
+		this.backend = backend;
+		this.source = source;
+		this.target = target;
+		this.cursor = cursor;
+		this.values = values;
+		this.upper = upper;
+		this.fallback = fallback;
+		this.statements = Maps.newHashMap();
+	}
+
+	@Override
+	public Batch copyBatch(Connection connection, Object[] lastProcessedId, long batchSize) throws SQLException {
+
+		if (!streaming) {
+			return fallback.copyBatch(connection, lastProcessedId, batchSize);
+		}
+
+		Object[] batchEnd = queryBatchEnd(connection, lastProcessedId, batchSize);
+		if (batchEnd == null) {
+			return null;
+		}
+
+		try {
+			long records = stream(connection, createCopyOutStatement(lastProcessedId, batchEnd));
+			return new Batch(batchEnd, records);
+		}
+		catch (SQLException e) {
+			if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+				throw e;
+			}
+
+			log.info("Records of: {} already present in: {}, switching from COPY to migrator functions",
+					source.getName(), target.getName());
+
+			streaming = false;
+			return fallback.copyBatch(connection, lastProcessedId, batchSize);
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		try {
+			for (PreparedStatement statement : statements.values()) {
+				statement.close();
+			}
+			statements.clear();
+
+			if (copyOutExecutor != null) {
+				copyOutExecutor.shutdownNow();
+			}
+			if (copyOutConnection != null) {
+				copyOutConnection.close();
+			}
+		}
+		finally {
+			fallback.close();
+		}
+	}
+
+	/**
+	 * Reads the records selected by the specified COPY ... TO STDOUT statement on the second connection, while
+	 * writing them into the target table on the specified connection.
+	 *
+	 * @return The amount of records which were copied.
+	 */
+	private long stream(Connection connection, String copyOutStatement) throws SQLException {
+		if (copyOutConnection == null) {
+			copyOutConnection = backend.connect();
+			copyOutExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("quantumdb-copy-out-" + source.getName() + "-%d")
+					.setDaemon(true)
+					.build());
+		}
+
+		CopyManager copyOutManager = copyOutConnection.unwrap(PGConnection.class).getCopyAPI();
+		CopyManager copyInManager = connection.unwrap(PGConnection.class).getCopyAPI();
+
+		try (PipedInputStream input = new PipedInputStream(PIPE_BUFFER_SIZE)) {
+			PipedOutputStream output = new PipedOutputStream(input);
+			Future<Long> copyOut = copyOutExecutor.submit(() -> {
+				try (PipedOutputStream pipe = output) {
+					return copyOutManager.copyOut(copyOutStatement, pipe);
+				}
+			});
+
+			try {
+				long records = copyInManager.copyIn(createCopyInStatement(), new CompletionCheckingStream(input, copyOut));
+				copyOut.get();
+				return records;
+			}
+			finally {
+				// Unblocks the COPY ... TO STDOUT if the COPY ... FROM STDIN failed before reading all records.
+				input.close();
+				copyOut.cancel(false);
+			}
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new SQLException("Could not read records from: " + source.getName(), cause);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while copying records from: " + source.getName(), e);
+		}
+		catch (IOException e) {
+			throw new SQLException("Could not copy records from: " + source.getName() + " to: " + target.getName(), e);
+		}
+	}
+
+	/**
+	 * Determines the identity of the last record in the next batch, which is the last record in the key range if
+	 * fewer than batchSize records remain in it.
+	 */
+	private Object[] queryBatchEnd(Connection connection, Object[] lastProcessedId, long batchSize)
+			throws SQLException {
+
+		String lower = lastProcessedId == null ? null : cursor.getPlaceholders();
+		String query = new QueryBuilder()
+				.append("SELECT " + cursor.getColumnList() + " FROM " + source.getName())
+				.append("WHERE " + createRangeCondition(lower, cursor.getPlaceholders()))
+				.append("ORDER BY " + cursor.getColumnList())
+				.append("OFFSET ? LIMIT 1;")
+				.toString();
+
+		PreparedStatement statement = prepare(connection, query);
+		int index = bindRange(statement, lastProcessedId);
+		statement.setLong(index, batchSize - 1);
+
+		try (ResultSet resultSet = statement.executeQuery()) {
+			if (resultSet.next()) {
+				return cursor.read(resultSet, 1);
+			}
+		}
+
+		String remaining = new QueryBuilder()
+				.append("SELECT 1 FROM " + source.getName())
+				.append("WHERE " + createRangeCondition(lower, cursor.getPlaceholders()))
+				.append("LIMIT 1;")
+				.toString();
+
+		PreparedStatement remainingStatement = prepare(connection, remaining);
+		bindRange(remainingStatement, lastProcessedId);
+		try (ResultSet resultSet = remainingStatement.executeQuery()) {
+			return resultSet.next() ? upper : null;
+		}
+	}
+
+	/**
+	 * Prepares the specified query once per engine. Only the first batch of a key range without a lower bound uses
+	 * different queries than the batches which follow it.
+	 */
+	private PreparedStatement prepare(Connection connection, String query) throws SQLException {
+		PreparedStatement statement = statements.get(query);
+		if (statement == null) {
+			statement = connection.prepareStatement(query);
+			if (statement.isWrapperFor(PGStatement.class)) {
+				statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+			}
+			statements.put(query, statement);
+		}
+		return statement;
+	}
+
+	private int bindRange(PreparedStatement statement, Object[] lastProcessedId) throws SQLException {
+		int index = 1;
+		if (lastProcessedId != null) {
+			cursor.bind(statement, index, lastProcessedId);
+			index += cursor.size();
+		}
+		cursor.bind(statement, index, upper);
+		return index + cursor.size();
+	}
+
+	private String createCopyOutStatement(Object[] lastProcessedId, Object[] batchEnd) {
+		String expressions = values.entrySet().stream()
+				.map(entry -> entry.getValue() + "::" + target.getColumn(entry.getKey()).getType())
+				.collect(Collectors.joining(", "));
+
+		// COPY does not accept parameters, so the bounds of the batch are rendered as literals.
+		String lower = lastProcessedId == null ? null : toLiterals(lastProcessedId);
+		return new QueryBuilder()
+				.append("COPY (SELECT " + expressions + " FROM " + source.getName())
+				.append("WHERE " + createRangeCondition(lower, toLiterals(batchEnd)) + ")")
+				.append("TO STDOUT WITH (FORMAT binary)")
+				.toString();
+	}
+
+	private String createCopyInStatement() {
+		String columns = values.keySet().stream()
+				.map(column -> "\"" + column + "\"")
+				.collect(Collectors.joining(", "));
+
+		return "COPY " + target.getName() + " (" + columns + ") FROM STDIN WITH (FORMAT binary)";
+	}
+
+	/**
+	 * Creates a condition matching the identities after lower (exclusive, if specified), up to and including upper.
+	 */
+	private String createRangeCondition(String lower, String upper) {
+		String condition = "(" + cursor.getColumnList() + ") <= (" + upper + ")";
+		if (lower != null) {
+			condition = "(" + cursor.getColumnList() + ") > (" + lower + ") AND " + condition;
+		}
+		return condition;
+	}
+
+	private String toLiterals(Object[] identity) {
+		List<String> literals = Lists.newArrayList();
+		for (int i = 0; i < identity.length; i++) {
+			literals.add(cursor.toLiteral(i, identity[i]));
+		}
+		return Joiner.on(", ").join(literals);
+	}
+
+	/**
+	 * Fails instead of signalling the end of the stream when the COPY ... TO STDOUT failed, since PostgreSQL would
+	 * otherwise accept the records which were read up until then as a complete batch.
+	 */
+	private static class CompletionCheckingStream extends FilterInputStream {
+
+		private final Future<Long> copyOut;
+
+		private CompletionCheckingStream(InputStream input, Future<Long> copyOut) {
+			super(input);
+			this.copyOut = copyOut;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return checkCompletion(super.read());
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return checkCompletion(super.read(buffer, offset, length));
+		}
+
+		private int checkCompletion(int result) throws IOException {
+			if (result < 0) {
+				try {
+					copyOut.get();
+				}
+				catch (ExecutionException e) {
+					throw new IOException("Could not read records", e.getCause());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while reading records", e);
+				}
+			}
+			return result;
+		}
+
+	}
+
+}
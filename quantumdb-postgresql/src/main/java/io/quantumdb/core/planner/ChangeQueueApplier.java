@@ -0,0 +1,185 @@
+package io.quantumdb.core.planner;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.quantumdb.core.utils.QueryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies the changes recorded by QUEUED sync functions to their target tables in the background, using large
+ * set-based batches on a connection of its own. Before the migration completes, {@link #cutover} guarantees that
+ * every target table has caught up with its source table, and switches the sync functions over to a synchronous
+ * strategy, since no changes can be applied after the migration has completed. When the migration fails instead,
+ * {@link #abandon} drops the sync functions along with their queues.
+ */
+@Slf4j
+class ChangeQueueApplier implements AutoCloseable {
+
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final PostgresqlBackend backend;
+	private final long batchSize;
+	private final List<SyncFunction> syncFunctions;
+	private final ScheduledExecutorService executor;
+
+	ChangeQueueApplier(PostgresqlBackend backend, long batchSize) {
+		this.backend = backend;
+		this.batchSize = Math.max(1, batchSize);
+		this.syncFunctions = Lists.newCopyOnWriteArrayList();
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("quantumdb-change-queue")
+				.setDaemon(true)
+				.build());
+
+		executor.scheduleWithFixedDelay(this::applyAll, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	void register(SyncFunction syncFunction) {
+		syncFunctions.add(syncFunction);
+	}
+
+	boolean isEmpty() {
+		return syncFunctions.isEmpty();
+	}
+
+	private void applyAll() {
+		try (Connection connection = backend.connect()) {
+			for (SyncFunction syncFunction : syncFunctions) {
+				apply(connection, syncFunction);
+			}
+		}
+		catch (SQLException e) {
+			// Changes remain queued, and are applied again by the next attempt or during the cutover.
+			log.warn("Could not apply queued changes: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Applies batches of queued changes until the queue of the specified sync function is empty.
+	 *
+	 * @return The amount of queued changes which were applied.
+	 */
+	private long apply(Connection connection, SyncFunction syncFunction) throws SQLException {
+		long total = 0;
+		while (true) {
+			QueryBuilder query;
+			synchronized (syncFunction) {
+				query = syncFunction.createApplyStatement(batchSize);
+			}
+
+			long applied;
+			try (Statement statement = connection.createStatement();
+					ResultSet resultSet = statement.executeQuery(query.toString())) {
+				resultSet.next();
+				applied = resultSet.getLong(1);
+			}
+
+			total += applied;
+			if (applied < batchSize) {
+				if (total > 0) {
+					log.debug("Applied {} queued changes to table: {}", total, syncFunction.getTarget().getRefId());
+				}
+				return total;
+			}
+		}
+	}
+
+	/**
+	 * Stops applying changes in the background, and then for every registered sync function: briefly blocks writes
+	 * to its source table, applies the remaining queued changes, replaces the sync function and its triggers with
+	 * ones using the specified strategy, and drops its queue table.
+	 *
+	 * @param strategy The synchronous strategy which the sync functions should use from now on.
+	 * @throws SQLException In case the changes could not be applied, or the sync functions could not be replaced.
+	 * @throws InterruptedException In case the thread was interrupted while waiting for the background work to stop.
+	 */
+	void cutover(SyncFunction.Strategy strategy) throws SQLException, InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		try (Connection connection = backend.connect()) {
+			connection.setAutoCommit(false);
+			for (SyncFunction syncFunction : syncFunctions) {
+				String sourceRefId = syncFunction.getSource().getRefId();
+				log.info("Cutting over sync function: {} for table: {}", syncFunction.getFunctionName(), sourceRefId);
+
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("LOCK TABLE " + sourceRefId + " IN SHARE ROW EXCLUSIVE MODE;");
+				}
+
+				long applied = apply(connection, syncFunction);
+				synchronized (syncFunction) {
+					execute(connection, syncFunction.createDropTriggerStatement());
+					syncFunction.setStrategy(strategy);
+					execute(connection, syncFunction.createFunctionStatement());
+					execute(connection, syncFunction.createTriggerStatement());
+					execute(connection, new QueryBuilder("DROP TABLE " + syncFunction.getQueueName() + ";"));
+				}
+				connection.commit();
+				syncFunctions.remove(syncFunction);
+
+				log.info("Applied {} remaining queued changes to table: {}", applied,
+						syncFunction.getTarget().getRefId());
+			}
+		}
+	}
+
+	/**
+	 * Stops applying changes in the background, and drops the triggers, functions and queue tables of every sync
+	 * function which has not been cut over yet. This is used when the migration has failed, in which case nothing
+	 * would ever apply or drop the queued changes, and the queue tables would keep on growing. The target tables
+	 * of the migration are abandoned along with it, so the queued changes are simply discarded. Failures are
+	 * logged rather than thrown, so that they don't mask the failure of the migration itself.
+	 */
+	void abandon() {
+		executor.shutdownNow();
+
+		try (Connection connection = backend.connect()) {
+			for (SyncFunction syncFunction : syncFunctions) {
+				String functionName = syncFunction.getFunctionName();
+				String queueName = syncFunction.getQueueName();
+				try {
+					synchronized (syncFunction) {
+						execute(connection, syncFunction.createDropTriggerStatement());
+						// Dropping the function also drops any of its triggers which are still left.
+						execute(connection, new QueryBuilder("DROP FUNCTION IF EXISTS " + functionName
+								+ "() CASCADE;"));
+						execute(connection, new QueryBuilder("DROP TABLE IF EXISTS " + queueName + ";"));
+					}
+					syncFunctions.remove(syncFunction);
+					log.info("Dropped queued sync function: {} for table: {}", functionName,
+							syncFunction.getSource().getRefId());
+				}
+				catch (SQLException e) {
+					log.error("Could not drop queued sync function: " + functionName + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		catch (SQLException e) {
+			log.error("Could not drop queued sync functions: " + e.getMessage(), e);
+		}
+	}
+
+	private void execute(Connection connection, QueryBuilder query) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			log.debug("Executing: " + query);
+			statement.execute(query.toString());
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
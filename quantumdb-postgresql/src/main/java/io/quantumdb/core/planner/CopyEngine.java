@@ -0,0 +1,49 @@
+package io.quantumdb.core.planner;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import lombok.Data;
+
+/**
+ * Copies batches of records from a source table to a target table, in the order of their identities. A CopyEngine
+ * is used with a single connection, and may keep statements prepared on that connection until it is closed.
+ */
+interface CopyEngine extends AutoCloseable {
+
+	@Data
+	class Batch {
+
+		/**
+		 * The identity of the last record in the batch.
+		 */
+		private final Object[] lastIdentity;
+
+		/**
+		 * The amount of records in the batch, including records which were already present in the target table.
+		 */
+		private final long records;
+
+	}
+
+	/**
+	 * Copies the next batch of records.
+	 *
+	 * @param connection The connection to copy the records with.
+	 * @param lastProcessedId The identity of the last record which was copied, or NULL to start with the first
+	 *                        record.
+	 * @param batchSize The maximum amount of records to copy.
+	 * @return The batch which was copied, or NULL if no records remain to be copied.
+	 * @throws SQLException In case the records could not be copied.
+	 */
+	Batch copyBatch(Connection connection, Object[] lastProcessedId, long batchSize) throws SQLException;
+
+	/**
+	 * Releases the statements which were prepared by this CopyEngine.
+	 *
+	 * @throws SQLException In case the statements could not be closed.
+	 */
+	@Override
+	void close() throws SQLException;
+
+}
@@ -0,0 +1,67 @@
+package io.quantumdb.core.planner;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import io.quantumdb.core.utils.QueryBuilder;
+import lombok.Data;
+
+/**
+ * A snapshot of how busy the database is, sampled from pg_stat_activity and pg_stat_replication.
+ */
+@Data
+class DatabaseLoad {
+
+	static final DatabaseLoad IDLE = new DatabaseLoad(0, 0, 0);
+
+	/**
+	 * Samples the current load of the database. Sessions opened by QuantumDB itself (such as parallel copy workers)
+	 * are not counted as active backends, since they would otherwise make the copy throttle itself. Sessions waiting
+	 * on locks are identified through 'wait_event_type' on PostgreSQL 9.6 and up, and through 'waiting' on older
+	 * versions. The replica lag is only sampled on PostgreSQL 10 and up, since pg_stat_replication doesn't expose it
+	 * on older versions.
+	 *
+	 * @param connection The connection to sample the load with.
+	 * @return The current load of the database.
+	 * @throws SQLException In case the load could not be sampled.
+	 */
+	static DatabaseLoad sample(Connection connection) throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		int major = metaData.getDatabaseMajorVersion();
+		int minor = metaData.getDatabaseMinorVersion();
+		boolean waitEventSupported = major > 9 || (major == 9 && minor >= 6);
+		boolean replicaLagSupported = major >= 10;
+
+		String query = new QueryBuilder()
+				.append("SELECT")
+				.append("  (SELECT COUNT(*) FROM pg_stat_activity")
+				.append("    WHERE state = 'active' AND pid <> pg_backend_pid()")
+				.append("    AND application_name IS DISTINCT FROM '" + PostgresqlBackend.APPLICATION_NAME + "')")
+				.append("    AS active_backends,")
+				.append(waitEventSupported
+						? "  (SELECT COUNT(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock') AS lock_waits,"
+						: "  (SELECT COUNT(*) FROM pg_stat_activity WHERE waiting) AS lock_waits,")
+				.append(replicaLagSupported
+						? "  (SELECT COALESCE(MAX(EXTRACT(EPOCH FROM replay_lag)) * 1000, 0) FROM pg_stat_replication)"
+						: "  0")
+				.append("    AS replica_lag;")
+				.toString();
+
+		try (Statement statement = connection.createStatement()) {
+			ResultSet resultSet = statement.executeQuery(query);
+			if (resultSet.next()) {
+				return new DatabaseLoad(resultSet.getLong("active_backends"), resultSet.getLong("lock_waits"),
+						resultSet.getLong("replica_lag"));
+			}
+			throw new SQLException("Query produced 0 rows!");
+		}
+	}
+
+	private final long activeBackends;
+	private final long lockWaits;
+	private final long replicaLagMillis;
+
+}
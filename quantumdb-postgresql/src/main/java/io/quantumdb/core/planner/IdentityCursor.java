@@ -0,0 +1,286 @@
+package io.quantumdb.core.planner;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import io.quantumdb.core.schema.definitions.Column;
+import io.quantumdb.core.schema.definitions.ColumnType.Type;
+
+/**
+ * Describes the position of a copy within the identity space of a table. An identity is represented as an array of
+ * the values of the identity columns, in the order of those columns. Values are read from and bound to JDBC
+ * statements using their native types, and identities are compared lexicographically (in the same way PostgreSQL
+ * compares row values) without converting or parsing their values. Text values are compared character by
+ * character, which only corresponds to PostgreSQL's order under the "C" collation. Whether PostgreSQL orders the
+ * identities in the same way is reported by {@link #isOrderedAsDatabase()}.
+ */
+class IdentityCursor {
+
+	private enum Kind {
+		INTEGRAL, FLOATING, DECIMAL, BOOLEAN, UUID, TEXT, DATE, TIMESTAMP, BYTES
+	}
+
+	private final List<Column> columns;
+	private final Kind[] kinds;
+
+	IdentityCursor(List<Column> columns) {
+		this.columns = ImmutableList.copyOf(columns);
+		this.kinds = new Kind[columns.size()];
+		for (int i = 0; i < kinds.length; i++) {
+			kinds[i] = determineKind(columns.get(i).getType().getType());
+		}
+	}
+
+	List<Column> getColumns() {
+		return columns;
+	}
+
+	int size() {
+		return kinds.length;
+	}
+
+	/**
+	 * @return The quoted names of the identity columns, separated by commas.
+	 */
+	String getColumnList() {
+		return columns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * @return A parameter placeholder for every identity column, cast to the type of that column.
+	 */
+	String getPlaceholders() {
+		return columns.stream()
+				.map(column -> "?::" + column.getType())
+				.collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Reads an identity from the current row of the specified ResultSet.
+	 *
+	 * @param resultSet The ResultSet to read from.
+	 * @param firstIndex The index of the column holding the value of the first identity column.
+	 * @return The identity, or NULL if the value of the first identity column is NULL.
+	 * @throws SQLException In case the values could not be read.
+	 */
+	Object[] read(ResultSet resultSet, int firstIndex) throws SQLException {
+		Object[] identity = new Object[kinds.length];
+		for (int i = 0; i < kinds.length; i++) {
+			int index = firstIndex + i;
+			switch (kinds[i]) {
+				case INTEGRAL:
+					identity[i] = resultSet.getLong(index);
+					break;
+				case FLOATING:
+					identity[i] = resultSet.getDouble(index);
+					break;
+				case DECIMAL:
+					identity[i] = resultSet.getBigDecimal(index);
+					break;
+				case BOOLEAN:
+					identity[i] = resultSet.getBoolean(index);
+					break;
+				case UUID:
+					identity[i] = resultSet.getObject(index, UUID.class);
+					break;
+				case DATE:
+					identity[i] = resultSet.getDate(index);
+					break;
+				case TIMESTAMP:
+					identity[i] = resultSet.getTimestamp(index);
+					break;
+				case BYTES:
+					identity[i] = resultSet.getBytes(index);
+					break;
+				default:
+					identity[i] = resultSet.getString(index);
+			}
+
+			if (resultSet.wasNull()) {
+				if (i == 0) {
+					return null;
+				}
+				throw new IllegalStateException("NULL values in identity columns are currently not supported.");
+			}
+		}
+		return identity;
+	}
+
+	/**
+	 * Binds the values of the specified identity as parameters of a PreparedStatement.
+	 *
+	 * @param statement The PreparedStatement to bind the values to.
+	 * @param firstIndex The index of the parameter of the first identity column.
+	 * @param identity The identity to bind.
+	 * @throws SQLException In case the values could not be bound.
+	 */
+	void bind(PreparedStatement statement, int firstIndex, Object[] identity) throws SQLException {
+		for (int i = 0; i < kinds.length; i++) {
+			int index = firstIndex + i;
+			Object value = identity[i];
+			switch (kinds[i]) {
+				case INTEGRAL:
+					statement.setLong(index, ((Number) value).longValue());
+					break;
+				case FLOATING:
+					statement.setDouble(index, ((Number) value).doubleValue());
+					break;
+				case DECIMAL:
+					statement.setBigDecimal(index, (BigDecimal) value);
+					break;
+				case BOOLEAN:
+					statement.setBoolean(index, (Boolean) value);
+					break;
+				case BYTES:
+					statement.setBytes(index, (byte[]) value);
+					break;
+				case TEXT:
+					statement.setString(index, value.toString());
+					break;
+				default:
+					statement.setObject(index, value);
+			}
+		}
+	}
+
+	/**
+	 * Renders the value of an identity column as an SQL literal, for statements which cannot be parameterized
+	 * such as COPY. Floating point values are quoted, since NaN and (-)Infinity are not valid numeric literals.
+	 */
+	String toLiteral(int index, Object value) {
+		switch (kinds[index]) {
+			case INTEGRAL:
+			case DECIMAL:
+			case BOOLEAN:
+				return value.toString();
+			case BYTES:
+				return "'" + toHex((byte[]) value) + "'::bytea";
+			default:
+				return "'" + value.toString().replace("'", "''") + "'::" + columns.get(index).getType();
+		}
+	}
+
+	/**
+	 * Renders the value of an identity column as text, which can be cast back to the type of the column.
+	 */
+	String toText(int index, Object value) {
+		if (kinds[index] == Kind.BYTES) {
+			return toHex((byte[]) value);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * @return True if identities are compared in the same order in which PostgreSQL sorts them. This is not the
+	 * case for text values, which PostgreSQL sorts according to the collation of their column, nor for floating
+	 * point values, of which PostgreSQL considers -0 and 0 to be equal. Such identities may only be compared in SQL.
+	 */
+	boolean isOrderedAsDatabase() {
+		for (Kind kind : kinds) {
+			if (kind == Kind.TEXT || kind == Kind.FLOATING) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return A negative number, zero, or a positive number if the left identity sorts before, equal to, or after
+	 * the right identity.
+	 */
+	int compare(Object[] left, Object[] right) {
+		for (int i = 0; i < kinds.length; i++) {
+			int result = compare(kinds[i], left[i], right[i]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	String toString(Object[] identity) {
+		return identity == null ? "[]" : Arrays.deepToString(identity);
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder("\\x");
+		for (byte b : bytes) {
+			builder.append(String.format("%02x", b & 0xff));
+		}
+		return builder.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compare(Kind kind, Object left, Object right) {
+		if (left == null || right == null) {
+			throw new IllegalStateException("NULL values in identity columns are currently not supported.");
+		}
+
+		switch (kind) {
+			case INTEGRAL:
+				return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+			case FLOATING:
+				return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+			case BOOLEAN:
+				return Boolean.compare((Boolean) left, (Boolean) right);
+			case UUID:
+				// PostgreSQL compares UUIDs as unsigned bytes, whereas UUID.compareTo() uses signed longs.
+				UUID leftUuid = (UUID) left;
+				UUID rightUuid = (UUID) right;
+				int result = Long.compareUnsigned(leftUuid.getMostSignificantBits(), rightUuid.getMostSignificantBits());
+				if (result != 0) {
+					return result;
+				}
+				return Long.compareUnsigned(leftUuid.getLeastSignificantBits(), rightUuid.getLeastSignificantBits());
+			case BYTES:
+				byte[] leftBytes = (byte[]) left;
+				byte[] rightBytes = (byte[]) right;
+				for (int i = 0; i < Math.min(leftBytes.length, rightBytes.length); i++) {
+					int byteResult = Integer.compare(leftBytes[i] & 0xff, rightBytes[i] & 0xff);
+					if (byteResult != 0) {
+						return byteResult;
+					}
+				}
+				return Integer.compare(leftBytes.length, rightBytes.length);
+			default:
+				return ((Comparable<Object>) left).compareTo(right);
+		}
+	}
+
+	private static Kind determineKind(Type type) {
+		switch (type) {
+			case OID:
+			case SMALLINT:
+			case INTEGER:
+			case BIGINT:
+				return Kind.INTEGRAL;
+			case FLOAT:
+			case DOUBLE:
+				return Kind.FLOATING;
+			case NUMERIC:
+				return Kind.DECIMAL;
+			case BOOLEAN:
+				return Kind.BOOLEAN;
+			case UUID:
+				return Kind.UUID;
+			case DATE:
+				return Kind.DATE;
+			case TIMESTAMP:
+				return Kind.TIMESTAMP;
+			case BYTEA:
+				return Kind.BYTES;
+			default:
+				return Kind.TEXT;
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package io.quantumdb.core.planner;
+
+import lombok.Data;
+
+/**
+ * A range of identities of a source table which is copied independently of other ranges. Identities are
+ * represented as described by {@link IdentityCursor}.
+ */
+@Data
+class KeyRange {
+
+	/**
+	 * The identity after which this range starts (exclusive), or NULL if it starts at the beginning.
+	 */
+	private final Object[] lower;
+
+	/**
+	 * The identity at which this range ends (inclusive).
+	 */
+	private final Object[] upper;
+
+}
@@ -0,0 +1,350 @@
+package io.quantumdb.core.planner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.quantumdb.core.planner.TestDecodingParser.Change;
+import io.quantumdb.core.schema.definitions.Column;
+import io.quantumdb.core.utils.QueryBuilder;
+import io.quantumdb.core.utils.RandomHasher;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+/**
+ * Keeps ghost tables in sync with their source tables by reading the changes of the source tables from a temporary
+ * logical replication slot (using the 'test_decoding' output plugin), instead of using triggers. PostgreSQL drops
+ * the slot as soon as its replication connection is closed, so that it can never be left behind to retain WAL, not
+ * even when the migration crashes. Changes are applied
+ * in batches on a connection of its own, by bringing the changed records in the ghost tables up to date with the
+ * current state of the source tables. Before the migration completes, {@link #cutover} guarantees that every ghost
+ * table has caught up with its source table, and replaces the REPLICATED sync functions with synchronous ones, since
+ * no changes can be read from the replication slot after the migration has completed.
+ */
+@Slf4j
+class LogicalChangeStream implements AutoCloseable {
+
+	private static final String OUTPUT_PLUGIN = "test_decoding";
+	private static final String MESSAGE_PREFIX = "quantumdb";
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	// PostgreSQL accepts at most 32767 parameters per statement.
+	private static final int MAX_PARAMETERS = Short.MAX_VALUE;
+
+	/**
+	 * Creates a temporary replication slot and starts reading the changes which are committed from now on.
+	 *
+	 * @return The LogicalChangeStream, or NULL if the server doesn't support temporary logical replication slots.
+	 * @throws SQLException In case the replication slot could not be created.
+	 */
+	static LogicalChangeStream start(PostgresqlBackend backend, long batchSize) throws SQLException {
+		try (Connection connection = backend.connect()) {
+			DatabaseMetaData metaData = connection.getMetaData();
+			if (metaData.getDatabaseMajorVersion() < 10) {
+				log.warn("Logical sync requires PostgreSQL 10 or up, falling back to trigger-based sync functions.");
+				return null;
+			}
+
+			try (Statement statement = connection.createStatement();
+					ResultSet resultSet = statement.executeQuery("SHOW wal_level;")) {
+				resultSet.next();
+				if (!"logical".equals(resultSet.getString(1))) {
+					log.warn("Logical sync requires 'wal_level=logical', falling back to trigger-based sync functions.");
+					return null;
+				}
+			}
+		}
+
+		String slotName = "quantumdb_" + RandomHasher.generateHash();
+		Connection replicationConnection = backend.connectForReplication();
+		try {
+			PGConnection connection = replicationConnection.unwrap(PGConnection.class);
+			connection.getReplicationAPI()
+					.createReplicationSlot()
+					.logical()
+					.withSlotName(slotName)
+					.withOutputPlugin(OUTPUT_PLUGIN)
+					.withTemporaryOption()
+					.make();
+
+			PGReplicationStream stream = connection.getReplicationAPI()
+					.replicationStream()
+					.logical()
+					.withSlotName(slotName)
+					.withSlotOption("include-xids", false)
+					.withSlotOption("skip-empty-xacts", true)
+					.withStatusInterval(10, TimeUnit.SECONDS)
+					.start();
+
+			log.info("Reading changes from replication slot: {}", slotName);
+			return new LogicalChangeStream(backend, batchSize, slotName, replicationConnection, stream);
+		}
+		catch (SQLException | RuntimeException e) {
+			replicationConnection.close();
+			throw e;
+		}
+	}
+
+	private final PostgresqlBackend backend;
+	private final long batchSize;
+	private final String slotName;
+	private final Connection replicationConnection;
+	private final PGReplicationStream stream;
+	private final ListMultimap<String, SyncFunction> syncFunctions;
+	private final ScheduledExecutorService executor;
+
+	private LogicalChangeStream(PostgresqlBackend backend, long batchSize, String slotName,
+			Connection replicationConnection, PGReplicationStream stream) {
+
+		this.backend = backend;
+		this.batchSize = Math.max(1, batchSize);
+		this.slotName = slotName;
+		this.replicationConnection = replicationConnection;
+		this.stream = stream;
+		this.syncFunctions = Multimaps.synchronizedListMultimap(ArrayListMultimap.create());
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("quantumdb-logical-sync")
+				.setDaemon(true)
+				.build());
+
+		executor.scheduleWithFixedDelay(this::applyPending, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	void register(SyncFunction syncFunction) {
+		syncFunctions.put(syncFunction.getSource().getRefId(), syncFunction);
+	}
+
+	boolean isEmpty() {
+		return syncFunctions.isEmpty();
+	}
+
+	private void applyPending() {
+		try (Connection connection = backend.connect()) {
+			apply(connection, null);
+		}
+		catch (SQLException e) {
+			// Changes are only acknowledged once they have been applied, and are applied again during the cutover.
+			log.warn("Could not apply changes from replication slot: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads changes from the replication slot, and applies them to the ghost tables. If no marker is specified this
+	 * returns as soon as no more changes are pending, otherwise this blocks until the message with the specified
+	 * marker has been read.
+	 */
+	private void apply(Connection connection, String marker) throws SQLException {
+		// SyncFunctions are mutable, and are therefore compared by identity.
+		ListMultimap<SyncFunction, String[]> pending = Multimaps.newListMultimap(new IdentityHashMap<>(),
+				ArrayList::new);
+		while (true) {
+			ByteBuffer buffer = marker == null ? stream.readPending() : stream.read();
+			if (buffer == null) {
+				break;
+			}
+
+			String line = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+					StandardCharsets.UTF_8);
+
+			if (marker != null && isMarker(line, marker)) {
+				break;
+			}
+
+			Change change = TestDecodingParser.parse(line);
+			if (change == null) {
+				if (line.startsWith("table ")) {
+					log.warn("Ignoring unsupported change: {}", line);
+				}
+				continue;
+			}
+
+			for (SyncFunction syncFunction : getSyncFunctions(change.getTableName())) {
+				addIdentity(pending, syncFunction, change.getOldValues());
+				addIdentity(pending, syncFunction, change.getNewValues());
+			}
+
+			if (pending.size() >= batchSize) {
+				replay(connection, pending);
+			}
+		}
+
+		replay(connection, pending);
+
+		LogSequenceNumber lastReceived = stream.getLastReceiveLSN();
+		stream.setAppliedLSN(lastReceived);
+		stream.setFlushedLSN(lastReceived);
+	}
+
+	private List<SyncFunction> getSyncFunctions(String tableName) {
+		synchronized (syncFunctions) {
+			return Lists.newArrayList(syncFunctions.get(tableName));
+		}
+	}
+
+	private boolean isMarker(String line, String marker) {
+		return line.startsWith("message:") && line.contains("prefix: " + MESSAGE_PREFIX + ",")
+				&& line.endsWith("content:" + marker);
+	}
+
+	private void addIdentity(ListMultimap<SyncFunction, String[]> pending, SyncFunction syncFunction,
+			Map<String, String> values) {
+
+		if (values.isEmpty()) {
+			return;
+		}
+
+		List<Column> identityColumns;
+		synchronized (syncFunction) {
+			identityColumns = syncFunction.getSourceIdentityColumns();
+		}
+
+		String[] identity = new String[identityColumns.size()];
+		for (int i = 0; i < identity.length; i++) {
+			identity[i] = values.get(identityColumns.get(i).getName());
+			if (identity[i] == null) {
+				return;
+			}
+		}
+		pending.put(syncFunction, identity);
+	}
+
+	private void replay(Connection connection, ListMultimap<SyncFunction, String[]> pending) throws SQLException {
+		for (SyncFunction syncFunction : pending.keySet()) {
+			List<String[]> identities = pending.get(syncFunction);
+			int identitySize = identities.get(0).length;
+			int chunkSize = (int) Math.min(batchSize, MAX_PARAMETERS / identitySize);
+
+			for (List<String[]> chunk : Lists.partition(identities, chunkSize)) {
+				QueryBuilder query;
+				synchronized (syncFunction) {
+					query = syncFunction.createReplayStatement(chunk.size());
+				}
+
+				try (PreparedStatement statement = connection.prepareStatement(query.toString())) {
+					int index = 1;
+					for (String[] identity : chunk) {
+						for (String value : identity) {
+							statement.setString(index++, value);
+						}
+					}
+					statement.execute();
+				}
+			}
+
+			log.debug("Applied {} changes to table: {}", identities.size(), syncFunction.getTarget().getRefId());
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Stops applying changes in the background, briefly blocks writes to all source tables, applies all changes
+	 * which were committed up to that point, and replaces the REPLICATED sync functions with ones using the
+	 * specified strategy. Finally, the replication slot is dropped.
+	 *
+	 * @param strategy The synchronous strategy which the sync functions should use from now on.
+	 * @throws SQLException In case the changes could not be applied, or the sync functions could not be replaced.
+	 * @throws InterruptedException In case the thread was interrupted while waiting for the background work to stop.
+	 */
+	void cutover(SyncFunction.Strategy strategy) throws SQLException, InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		List<SyncFunction> functions;
+		synchronized (syncFunctions) {
+			functions = Lists.newArrayList(syncFunctions.values());
+		}
+
+		try (Connection connection = backend.connect()) {
+			connection.setAutoCommit(false);
+
+			Set<String> sourceTables = functions.stream()
+					.map(syncFunction -> syncFunction.getSource().getRefId())
+					.collect(Collectors.toCollection(Sets::newTreeSet));
+
+			log.info("Cutting over logical sync for tables: {}", sourceTables);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("LOCK TABLE " + String.join(", ", sourceTables) + " IN SHARE ROW EXCLUSIVE MODE;");
+			}
+
+			// Every change to the source tables was committed before the locks were acquired, and is therefore
+			// decoded before this (non-transactional) message.
+			String marker = "cutover_" + RandomHasher.generateHash();
+			try (PreparedStatement statement = connection.prepareStatement(
+					"SELECT pg_logical_emit_message(false, ?, ?);")) {
+				statement.setString(1, MESSAGE_PREFIX);
+				statement.setString(2, marker);
+				statement.execute();
+			}
+
+			apply(connection, marker);
+
+			for (SyncFunction syncFunction : functions) {
+				synchronized (syncFunction) {
+					syncFunction.setStrategy(strategy);
+					execute(connection, syncFunction.createFunctionStatement());
+					execute(connection, syncFunction.createDropTriggerStatement());
+					execute(connection, syncFunction.createTriggerStatement());
+				}
+			}
+			connection.commit();
+		}
+
+		syncFunctions.clear();
+		close();
+	}
+
+	private void execute(Connection connection, QueryBuilder query) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			log.debug("Executing: " + query);
+			statement.execute(query.toString());
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		try {
+			if (!stream.isClosed()) {
+				stream.close();
+			}
+		}
+		catch (SQLException e) {
+			log.warn("Could not close replication stream: " + e.getMessage(), e);
+		}
+
+		try {
+			if (!replicationConnection.isClosed()) {
+				// Closing the connection also drops the temporary replication slot.
+				replicationConnection.close();
+				log.info("Dropped replication slot: {}", slotName);
+			}
+		}
+		catch (SQLException e) {
+			log.warn("Could not close replication connection: " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package io.quantumdb.core.planner;
+
+import io.quantumdb.core.backends.Config;
+import io.quantumdb.core.planner.MigratorFunction.Strategy;
+import lombok.Data;
+
+/**
+ * Tunables for copying data from source tables into ghost tables. Every setting can be overridden in the
+ * '.quantumdb' file using the 'migration.' prefix (for example: 'migration.targetBatchMillis=1000'). Thresholds
+ * which are set to zero or less are disabled.
+ */
+@Data
+public class MigrationSettings {
+
+	private static final String PREFIX = "migration.";
+
+	public static MigrationSettings load(Config config) {
+		MigrationSettings settings = new MigrationSettings();
+		settings.setTargetBatchMillis(getLong(config, "targetBatchMillis", settings.getTargetBatchMillis()));
+		settings.setInitialBatchSize(getLong(config, "initialBatchSize", settings.getInitialBatchSize()));
+		settings.setMinBatchSize(getLong(config, "minBatchSize", settings.getMinBatchSize()));
+		settings.setMaxBatchSize(getLong(config, "maxBatchSize", settings.getMaxBatchSize()));
+		settings.setInitialPauseMillis(getLong(config, "initialPauseMillis", settings.getInitialPauseMillis()));
+		settings.setMaxPauseMillis(getLong(config, "maxPauseMillis", settings.getMaxPauseMillis()));
+		settings.setMaxReplicaLagMillis(getLong(config, "maxReplicaLagMillis", settings.getMaxReplicaLagMillis()));
+		settings.setMaxLockWaits(getLong(config, "maxLockWaits", settings.getMaxLockWaits()));
+		settings.setMaxActiveBackends(getLong(config, "maxActiveBackends", settings.getMaxActiveBackends()));
+		settings.setCopyWorkers(getLong(config, "copyWorkers", settings.getCopyWorkers()));
+		settings.setStepWorkers(getLong(config, "stepWorkers", settings.getStepWorkers()));
+		settings.setUpdateFillfactor(getLong(config, "updateFillfactor", settings.getUpdateFillfactor()));
+		settings.setSyncQueueBatchSize(getLong(config, "syncQueueBatchSize", settings.getSyncQueueBatchSize()));
+
+		settings.setBulkCopy(getBoolean(config, "bulkCopy", settings.isBulkCopy()));
+		settings.setStatementSync(getBoolean(config, "statementSync", settings.isStatementSync()));
+		settings.setAsyncSync(getBoolean(config, "asyncSync", settings.isAsyncSync()));
+		settings.setLogicalSync(getBoolean(config, "logicalSync", settings.isLogicalSync()));
+
+		String copyStrategy = config.getProperty(PREFIX + "copyStrategy");
+		if (copyStrategy != null && !copyStrategy.trim().isEmpty()) {
+			settings.setCopyStrategy(Strategy.valueOf(copyStrategy.trim().toUpperCase()));
+		}
+		return settings;
+	}
+
+	private static boolean getBoolean(Config config, String key, boolean defaultValue) {
+		String value = config.getProperty(PREFIX + key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+
+	private static long getLong(Config config, String key, long defaultValue) {
+		String value = config.getProperty(PREFIX + key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Setting: " + PREFIX + key + " must be a number, but was: " + value, e);
+		}
+	}
+
+	/**
+	 * The duration a single batch should take. Batches grow when they complete faster, and shrink when they
+	 * complete slower than this.
+	 */
+	private long targetBatchMillis = 500;
+
+	private long initialBatchSize = 2_000;
+	private long minBatchSize = 100;
+	private long maxBatchSize = 100_000;
+
+	/**
+	 * The pause between two consecutive batches. The pause is lengthened while the database is under pressure, and
+	 * shortened again (down to zero) once it isn't.
+	 */
+	private long initialPauseMillis = 50;
+	private long maxPauseMillis = 10_000;
+
+	/**
+	 * Back off while any replica lags more than this behind the primary.
+	 */
+	private long maxReplicaLagMillis = 5_000;
+
+	/**
+	 * Back off while more than this many sessions are waiting to acquire a lock.
+	 */
+	private long maxLockWaits = 10;
+
+	/**
+	 * Back off while more than this many other sessions are actively executing a query.
+	 */
+	private long maxActiveBackends = 64;
+
+	/**
+	 * The amount of workers which copy disjoint key ranges of a single table in parallel, each using its own
+	 * connection. Every worker throttles itself independently.
+	 */
+	private long copyWorkers = 1;
+
+	/**
+	 * The amount of steps of a migration plan (for instance copying independent tables) which are executed
+	 * concurrently, each using their own connections. Every step may in turn use multiple copy workers.
+	 */
+	private long stepWorkers = 1;
+
+	/**
+	 * The fillfactor (10 to 100 percent) of ghost tables which are copied in multiple steps, while they are being
+	 * copied. The free space left on every page allows the records to be updated by the later steps without moving
+	 * them to other pages (HOT updates), at the expense of a temporarily larger table.
+	 */
+	private long updateFillfactor = 0;
+
+	/**
+	 * How the migrator functions copy a batch of records. The SET_BASED strategy falls back to ROW_BY_ROW on
+	 * servers which don't support it.
+	 */
+	private Strategy copyStrategy = Strategy.SET_BASED;
+
+	/**
+	 * Whether records may be streamed into an empty part of a target table using COPY, before falling back to the
+	 * migrator functions for the remainder of the copy.
+	 */
+	private boolean bulkCopy = true;
+
+	/**
+	 * Whether source and ghost tables may be kept in sync using statement-level triggers, which apply all changes
+	 * of a statement at once. This falls back to row-level triggers on servers older than PostgreSQL 10.
+	 */
+	private boolean statementSync = true;
+
+	/**
+	 * Whether changes to source tables are queued while their data is being copied, and applied to the ghost tables
+	 * in the background, rather than as part of every transaction which changes a source table. Before the
+	 * migration completes, writes to each source table are briefly blocked while its remaining changes are applied.
+	 */
+	private boolean asyncSync = false;
+
+	/**
+	 * Whether changes to source tables are read from a logical replication slot while their data is being copied,
+	 * and applied to the ghost tables in the background, rather than being captured by triggers. This requires
+	 * PostgreSQL 10 or newer with 'wal_level' set to 'logical', and a user with the REPLICATION privilege. Otherwise
+	 * this falls back to triggers.
+	 */
+	private boolean logicalSync = false;
+
+	/**
+	 * The maximum amount of queued or replicated changes which are applied to a ghost table using a single statement.
+	 */
+	private long syncQueueBatchSize = 10_000;
+
+}
@@ -11,6 +11,14 @@ public class MigratorFunction {
 		INITIAL, CONSECUTIVE
 	}
 
+	/**
+	 * ROW_BY_ROW migrators loop over a batch of records in PL/pgSQL, and insert or update them one at a time.
+	 * SET_BASED migrators process an entire batch using a single statement, which requires PostgreSQL 9.5 or up.
+	 */
+	public enum Strategy {
+		ROW_BY_ROW, SET_BASED
+	}
+
 	private final String name;
 	private final List<String> parameters;
 	private final String createStatement;
@@ -6,6 +6,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Properties;
 
 import io.quantumdb.core.backends.Config;
 import io.quantumdb.core.schema.definitions.Catalog;
@@ -15,10 +16,17 @@ import io.quantumdb.core.versioning.State;
 import io.quantumdb.core.versioning.Version;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGProperty;
 
 @Slf4j
 public class PostgresqlBackend implements io.quantumdb.core.backends.Backend {
 
+	/**
+	 * The application name reported by every connection QuantumDB opens, which tells them apart from the
+	 * application's own sessions in pg_stat_activity.
+	 */
+	static final String APPLICATION_NAME = "quantumdb";
+
 	private final Backend backend;
 
 	private final String jdbcUrl;
@@ -26,6 +34,7 @@ public class PostgresqlBackend implements io.quantumdb.core.backends.Backend {
 	private final String jdbcPass;
 	private final String jdbcCatalog;
 	private final String driver;
+	private final MigrationSettings migrationSettings;
 
 	public PostgresqlBackend(Config config) {
 		this.driver = config.getDriver();
@@ -35,6 +44,7 @@ public class PostgresqlBackend implements io.quantumdb.core.backends.Backend {
 		this.jdbcUser = config.getUser();
 		this.jdbcPass = config.getPassword();
 		this.jdbcCatalog = config.getCatalog();
+		this.migrationSettings = MigrationSettings.load(config);
 	}
 
 	@Override
@@ -63,6 +73,10 @@ public class PostgresqlBackend implements io.quantumdb.core.backends.Backend {
 		return new PostgresqlMigrator(this);
 	}
 
+	public MigrationSettings getMigrationSettings() {
+		return migrationSettings;
+	}
+
 	@Override
 	public boolean isJdbcUrlSupported(String jdbcUrl) {
 		return jdbcUrl.startsWith("jdbc:postgresql:");
@@ -87,11 +101,40 @@ public class PostgresqlBackend implements io.quantumdb.core.backends.Backend {
 	@SneakyThrows(ClassNotFoundException.class)
 	public Connection connect() throws SQLException {
 		Class.forName(driver);
-		Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPass);
+		Properties properties = new Properties();
+		if (jdbcUser != null) {
+			PGProperty.USER.set(properties, jdbcUser);
+		}
+		if (jdbcPass != null) {
+			PGProperty.PASSWORD.set(properties, jdbcPass);
+		}
+		PGProperty.APPLICATION_NAME.set(properties, APPLICATION_NAME);
+		Connection connection = DriverManager.getConnection(jdbcUrl, properties);
 		try (Statement statement = connection.createStatement()) {
 			statement.execute("SET SCHEMA 'public';");
 		}
 		return connection;
 	}
 
+	/**
+	 * @return A connection which can be used to create and read from temporary logical replication slots. The user
+	 * must have the REPLICATION attribute, and the server must be configured with 'wal_level=logical'.
+	 */
+	@SneakyThrows(ClassNotFoundException.class)
+	public Connection connectForReplication() throws SQLException {
+		Class.forName(driver);
+		Properties properties = new Properties();
+		if (jdbcUser != null) {
+			PGProperty.USER.set(properties, jdbcUser);
+		}
+		if (jdbcPass != null) {
+			PGProperty.PASSWORD.set(properties, jdbcPass);
+		}
+		PGProperty.APPLICATION_NAME.set(properties, APPLICATION_NAME);
+		PGProperty.REPLICATION.set(properties, "database");
+		PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+		PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+		return DriverManager.getConnection(jdbcUrl, properties);
+	}
+
 }
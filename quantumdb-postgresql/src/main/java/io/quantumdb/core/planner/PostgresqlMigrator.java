@@ -3,6 +3,7 @@ package io.quantumdb.core.planner;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
@@ -16,7 +17,10 @@ import io.quantumdb.core.backends.planner.Plan;
 import io.quantumdb.core.backends.planner.PlanValidator;
 import io.quantumdb.core.backends.planner.Step;
 import io.quantumdb.core.backends.postgresql.migrator.ViewCreator;
+import io.quantumdb.core.migration.MigrationProgress;
 import io.quantumdb.core.migration.Migrator.Stage;
+import io.quantumdb.core.migration.ProgressListener;
+import io.quantumdb.core.migration.TableProgress;
 import io.quantumdb.core.migration.VersionTraverser.Direction;
 import io.quantumdb.core.schema.definitions.Catalog;
 import io.quantumdb.core.schema.definitions.Column;
@@ -47,9 +51,16 @@ class PostgresqlMigrator implements DatabaseMigrator {
 	}
 
 	private final PostgresqlBackend backend;
+	private final List<ProgressListener> progressListeners;
 
 	PostgresqlMigrator(PostgresqlBackend backend) {
 		this.backend = backend;
+		this.progressListeners = Lists.newCopyOnWriteArrayList();
+	}
+
+	@Override
+	public void addProgressListener(ProgressListener listener) {
+		progressListeners.add(listener);
 	}
 
 	@Override
@@ -63,7 +74,8 @@ class PostgresqlMigrator implements DatabaseMigrator {
 		Set<Version> intermediateVersions = Sets.newHashSet(Sets.difference(postMigration, preMigration));
 		intermediateVersions.remove(to);
 
-		new InternalPlanner(backend, plan, state, from, to, intermediateVersions).migrate();
+		MigrationProgress progress = new MigrationProgress(progressListeners);
+		new InternalPlanner(backend, plan, state, from, to, intermediateVersions, progress).migrate();
 	}
 
 	@Override
@@ -219,7 +231,9 @@ class PostgresqlMigrator implements DatabaseMigrator {
 			connection.setAutoCommit(false);
 
 			dropSynchronizers(connection, state.getRefLog(), tablesToDrop);
+			SyncFunction.Strategy syncStrategy = determineSyncStrategy(connection, backend.getMigrationSettings());
 			for (SyncFunction syncFunction : newSyncFunctions.values()) {
+				syncFunction.setStrategy(syncStrategy);
 				execute(connection, syncFunction.createFunctionStatement());
 				execute(connection, syncFunction.createTriggerStatement());
 			}
@@ -260,8 +274,10 @@ class PostgresqlMigrator implements DatabaseMigrator {
 		String targetRefId = sync.getTarget().getRefId();
 
 		try (Statement statement = connection.createStatement()) {
-			statement.execute("DROP TRIGGER " + triggerName + " ON " + sourceRefId + ";");
-			statement.execute("DROP FUNCTION " + functionName + "();");
+			// Statement-level synchronizers consist of multiple triggers, which are all dropped along with the function.
+			statement.execute("DROP TRIGGER IF EXISTS " + triggerName + " ON " + sourceRefId + ";");
+			statement.execute("DROP FUNCTION IF EXISTS " + functionName + "() CASCADE;");
+			statement.execute("DROP TABLE IF EXISTS " + functionName + "_queue;");
 			sync.drop();
 			log.info("Dropped synchronizer: {}/{} for: {} -> {}", triggerName, functionName, sourceRefId, targetRefId);
 		}
@@ -320,6 +336,25 @@ class PostgresqlMigrator implements DatabaseMigrator {
 		tablesToDrop.forEach(refLog::dropTable);
 	}
 
+	static SyncFunction.Strategy determineSyncStrategy(Connection connection, MigrationSettings settings)
+			throws SQLException {
+
+		DatabaseMetaData metaData = connection.getMetaData();
+		int major = metaData.getDatabaseMajorVersion();
+		int minor = metaData.getDatabaseMinorVersion();
+
+		if (settings.isStatementSync()) {
+			if (major >= 10) {
+				return SyncFunction.Strategy.PER_STATEMENT;
+			}
+			log.warn("Statement-level sync functions require PostgreSQL 10 or up, falling back to row-level sync functions.");
+		}
+		if (major > 9 || (major == 9 && minor >= 5)) {
+			return SyncFunction.Strategy.PER_ROW;
+		}
+		return SyncFunction.Strategy.PER_ROW_WITH_RETRIES;
+	}
+
 	static class InternalPlanner {
 
 		private final Plan plan;
@@ -331,12 +366,17 @@ class PostgresqlMigrator implements DatabaseMigrator {
 		private final PostgresqlBackend backend;
 		private final Version from;
 		private final Version to;
+		private final MigrationProgress progress;
 
 		private final com.google.common.collect.Table<String, String, SyncFunction> syncFunctions;
+		private final com.google.common.collect.Table<Operation, String, TableProgress> copyProgress;
+
+		private ChangeQueueApplier changeQueue;
+		private LogicalChangeStream changeStream;
 
 
 		public InternalPlanner(PostgresqlBackend backend, Plan plan, State state, Version from, Version to,
-				Set<Version> intermediateVersions) {
+				Set<Version> intermediateVersions, MigrationProgress progress) {
 
 			this.backend = backend;
 			this.plan = plan;
@@ -344,28 +384,35 @@ class PostgresqlMigrator implements DatabaseMigrator {
 			this.refLog = plan.getRefLog();
 			this.state = state;
 			this.nullRecords = new NullRecords();
-			this.migratedColumns = HashMultimap.create();
+			this.migratedColumns = Multimaps.synchronizedSetMultimap(HashMultimap.create());
 			this.syncFunctions = HashBasedTable.create();
+			this.copyProgress = HashBasedTable.create();
 			this.from = from;
 			this.to = to;
+			this.progress = progress;
 		}
 
 		public void migrate() throws MigrationException {
 			createGhostTables();
+			registerCopies();
+			reserveUpdateSpace();
 
-			Optional<Step> nextStep;
-			while ((nextStep = plan.nextStep()).isPresent()) {
+			try {
+				executeSteps();
+			}
+			catch (MigrationException | RuntimeException e) {
+				// Don't leave the ghost tables which are copied in several steps with a reduced fillfactor, but don't let
+				// that mask the original failure.
 				try {
-					Step step = nextStep.get();
-					execute(step.getOperation());
-					step.markAsExecuted();
+					releaseUpdateSpace();
 				}
-				catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-					throw new MigrationException(e);
+				catch (MigrationException | RuntimeException suppressed) {
+					e.addSuppressed(suppressed);
 				}
+				throw e;
 			}
 
+			releaseUpdateSpace();
 			createIndexes();
 
 			synchronizeBackwards();
@@ -377,6 +424,73 @@ class PostgresqlMigrator implements DatabaseMigrator {
 			persistState();
 		}
 
+		private void executeSteps() throws MigrationException {
+			MigrationSettings settings = backend.getMigrationSettings();
+			if (settings.isLogicalSync()) {
+				changeStream = startChangeStream(settings);
+			}
+			if (changeStream == null && settings.isAsyncSync()) {
+				changeQueue = new ChangeQueueApplier(backend, settings.getSyncQueueBatchSize());
+			}
+
+			boolean completed = false;
+			try {
+				int workers = (int) settings.getStepWorkers();
+				new StepScheduler(plan.getSteps(), workers, step -> execute(step.getOperation())).run();
+				cutoverAsynchronousSync();
+				completed = true;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MigrationException(e);
+			}
+			finally {
+				if (changeQueue != null) {
+					changeQueue.close();
+					if (!completed) {
+						changeQueue.abandon();
+					}
+				}
+				if (changeStream != null) {
+					changeStream.close();
+				}
+			}
+		}
+
+		private LogicalChangeStream startChangeStream(MigrationSettings settings) throws MigrationException {
+			try {
+				return LogicalChangeStream.start(backend, settings.getSyncQueueBatchSize());
+			}
+			catch (SQLException e) {
+				throw new MigrationException(e);
+			}
+		}
+
+		/**
+		 * Ensures that all changes which were queued or replicated for the forward sync functions have been applied
+		 * to the ghost tables, and that those changes are synchronously applied from now on.
+		 */
+		private void cutoverAsynchronousSync() throws MigrationException, InterruptedException {
+			boolean queued = changeQueue != null && !changeQueue.isEmpty();
+			boolean replicated = changeStream != null && !changeStream.isEmpty();
+			if (!queued && !replicated) {
+				return;
+			}
+
+			try (Connection connection = backend.connect()) {
+				SyncFunction.Strategy strategy = determineSyncStrategy(connection, backend.getMigrationSettings());
+				if (queued) {
+					changeQueue.cutover(strategy);
+				}
+				if (replicated) {
+					changeStream.cutover(strategy);
+				}
+			}
+			catch (SQLException e) {
+				throw new MigrationException(e);
+			}
+		}
+
 		private void persistState() throws MigrationException {
 			try {
 				backend.persistState(state);
@@ -405,7 +519,7 @@ class PostgresqlMigrator implements DatabaseMigrator {
 						Set<String> combined = Sets.union(previouslyMigrated, columns);
 
 						synchronizeForwards(table, Sets.newHashSet(combined));
-						copyData(table, previouslyMigrated, columns);
+						copyData(operation, table, previouslyMigrated, columns);
 						this.migratedColumns.putAll(table, columns);
 						break;
 				}
@@ -435,6 +549,54 @@ class PostgresqlMigrator implements DatabaseMigrator {
 			}
 		}
 
+		/**
+		 * @return The ghost tables which are copied in more than one step, and whose records are therefore updated
+		 * after they have been inserted.
+		 */
+		private Set<Table> getTablesUpdatedAfterCopy() {
+			Multiset<Table> copies = HashMultiset.create();
+			for (Step step : plan.getSteps()) {
+				Operation operation = step.getOperation();
+				if (operation.getType() == Operation.Type.COPY) {
+					copies.addAll(operation.getTables());
+				}
+			}
+			return copies.entrySet().stream()
+					.filter(entry -> entry.getCount() > 1)
+					.map(Multiset.Entry::getElement)
+					.collect(Collectors.toSet());
+		}
+
+		private void reserveUpdateSpace() throws MigrationException {
+			int fillfactor = (int) backend.getMigrationSettings().getUpdateFillfactor();
+			Set<Table> tables = getTablesUpdatedAfterCopy();
+			if (fillfactor <= 0 || fillfactor >= 100 || tables.isEmpty()) {
+				return;
+			}
+
+			try (Connection connection = backend.connect()) {
+				new TableCreator().setFillfactor(connection, tables, Math.max(10, fillfactor));
+			}
+			catch (SQLException e) {
+				throw new MigrationException(e);
+			}
+		}
+
+		private void releaseUpdateSpace() throws MigrationException {
+			int fillfactor = (int) backend.getMigrationSettings().getUpdateFillfactor();
+			Set<Table> tables = getTablesUpdatedAfterCopy();
+			if (fillfactor <= 0 || fillfactor >= 100 || tables.isEmpty()) {
+				return;
+			}
+
+			try (Connection connection = backend.connect()) {
+				new TableCreator().resetFillfactor(connection, tables);
+			}
+			catch (SQLException e) {
+				throw new MigrationException(e);
+			}
+		}
+
 		private void createIndexes() throws MigrationException {
 			try (Connection connection = backend.connect()) {
 				TableCreator creator = new TableCreator();
@@ -448,31 +610,71 @@ class PostgresqlMigrator implements DatabaseMigrator {
 		private void synchronizeForwards(Table targetTable, Set<String> targetColumns) throws SQLException {
 			log.info("Creating forward sync function for table: {}...", targetTable.getName());
 			try (Connection connection = backend.connect()) {
-				Catalog catalog = state.getCatalog();
-				Multimap<TableRef, TableRef> tableMapping = state.getRefLog().getTableMapping(from, to);
-				for (Entry<TableRef, TableRef> entry : tableMapping.entries()) {
-					if (entry.getValue().getRefId().equals(targetTable.getName())) {
-						TableRef source = entry.getKey();
-						TableRef target = entry.getValue();
-						ensureSyncFunctionExists(connection, refLog, source, target, catalog, targetColumns);
+				// The RefLog is shared with the Steps which are executed concurrently.
+				synchronized (refLog) {
+					Catalog catalog = state.getCatalog();
+					Multimap<TableRef, TableRef> tableMapping = state.getRefLog().getTableMapping(from, to);
+					for (Entry<TableRef, TableRef> entry : tableMapping.entries()) {
+						if (entry.getValue().getRefId().equals(targetTable.getName())) {
+							TableRef source = entry.getKey();
+							TableRef target = entry.getValue();
+							ensureSyncFunctionExists(connection, refLog, source, target, catalog, targetColumns,
+									true);
+						}
 					}
 				}
 			}
 		}
 
-		private void copyData(Table targetTable, Set<String> migratedColumns, Set<String> columnsToMigrate)
-				throws SQLException, InterruptedException {
+		/**
+		 * Registers every copy in the plan with an estimate of the amount of records to copy, so that the progress
+		 * of the entire migration can be estimated from the start.
+		 */
+		private void registerCopies() throws MigrationException {
+			try (Connection connection = backend.connect()) {
+				for (Step step : plan.getSteps()) {
+					Operation operation = step.getOperation();
+					if (operation.getType() != Operation.Type.COPY) {
+						continue;
+					}
 
-			Catalog catalog = state.getCatalog();
-			Multimap<TableRef, TableRef> tableMapping = state.getRefLog().getTableMapping(from, to);
-			for (Entry<TableRef, TableRef> entry : tableMapping.entries()) {
-				if (entry.getValue().getRefId().equals(targetTable.getName())) {
-					Table source = catalog.getTable(entry.getKey().getRefId());
-					Table target = catalog.getTable(entry.getValue().getRefId());
-					TableDataMigrator tableDataMigrator = new TableDataMigrator(backend, refLog);
-					tableDataMigrator.migrateData(nullRecords, source, target, from, to, migratedColumns, columnsToMigrate);
+					Table targetTable = operation.getTables().iterator().next();
+					for (Table source : getSourceTables(targetTable)) {
+						long estimatedRows = TableDataMigrator.estimateRowCount(connection, source);
+						TableProgress tableProgress = progress.addTable(source.getName(), targetTable.getName(),
+								estimatedRows);
+						copyProgress.put(operation, source.getName(), tableProgress);
+					}
 				}
 			}
+			catch (SQLException e) {
+				throw new MigrationException(e);
+			}
+		}
+
+		private void copyData(Operation operation, Table targetTable, Set<String> migratedColumns,
+				Set<String> columnsToMigrate) throws SQLException, InterruptedException {
+
+			Catalog catalog = state.getCatalog();
+			Table target = catalog.getTable(targetTable.getName());
+			for (Table source : getSourceTables(targetTable)) {
+				TableProgress tableProgress = copyProgress.get(operation, source.getName());
+				TableDataMigrator tableDataMigrator = new TableDataMigrator(backend, refLog,
+						backend.getMigrationSettings());
+				tableDataMigrator.migrateData(nullRecords, source, target, from, to, migratedColumns, columnsToMigrate,
+						tableProgress);
+			}
+		}
+
+		private List<Table> getSourceTables(Table targetTable) {
+			Catalog catalog = state.getCatalog();
+			synchronized (refLog) {
+				Multimap<TableRef, TableRef> tableMapping = state.getRefLog().getTableMapping(from, to);
+				return tableMapping.entries().stream()
+						.filter(entry -> entry.getValue().getRefId().equals(targetTable.getName()))
+						.map(entry -> catalog.getTable(entry.getKey().getRefId()))
+						.collect(Collectors.toList());
+			}
 		}
 
 		private void synchronizeBackwards() throws MigrationException {
@@ -490,7 +692,7 @@ class PostgresqlMigrator implements DatabaseMigrator {
 							.collect(Collectors.toSet());
 
 					log.info("Creating backward sync function for table: {}...", target.getName());
-					ensureSyncFunctionExists(connection, refLog, source, target, catalog, columns);
+					ensureSyncFunctionExists(connection, refLog, source, target, catalog, columns, false);
 				}
 			}
 			catch (SQLException e) {
@@ -498,8 +700,49 @@ class PostgresqlMigrator implements DatabaseMigrator {
 			}
 		}
 
+		/**
+		 * @return The strategy of a new sync function. Forward sync functions are applied asynchronously, if so
+		 * configured.
+		 */
+		private SyncFunction.Strategy determineStrategy(Connection connection, boolean forward) throws SQLException {
+			if (forward && changeStream != null) {
+				return SyncFunction.Strategy.REPLICATED;
+			}
+			if (forward && changeQueue != null) {
+				return SyncFunction.Strategy.QUEUED;
+			}
+			return determineSyncStrategy(connection, backend.getMigrationSettings());
+		}
+
+		/**
+		 * Replaces the function and the triggers of the specified sync function. The triggers only fire for updates
+		 * of the mapped columns, so they are replaced along with the function. Doing so in a single transaction
+		 * ensures that no changes are missed in between.
+		 */
+		private void replaceSyncFunction(Connection connection, SyncFunction syncFunction) throws SQLException {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				PostgresqlMigrator.execute(connection, syncFunction.createFunctionStatement());
+				PostgresqlMigrator.execute(connection, syncFunction.createDropTriggerStatement());
+				PostgresqlMigrator.execute(connection, syncFunction.createTriggerStatement());
+				if (autoCommit) {
+					connection.commit();
+				}
+			}
+			catch (SQLException e) {
+				if (autoCommit) {
+					connection.rollback();
+				}
+				throw e;
+			}
+			finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		}
+
 		void ensureSyncFunctionExists(Connection connection, RefLog refLog, TableRef source,
-				TableRef target, Catalog catalog, Set<String> columns) throws SQLException {
+				TableRef target, Catalog catalog, Set<String> columns, boolean forward) throws SQLException {
 
 			String sourceRefId = source.getRefId();
 			String targetRefId = target.getRefId();
@@ -508,23 +751,39 @@ class PostgresqlMigrator implements DatabaseMigrator {
 			if (syncFunction == null) {
 				Map<ColumnRef, ColumnRef> mapping = refLog.getColumnMapping(source, target);
 				syncFunction = new SyncFunction(refLog, source, target, mapping, catalog, nullRecords);
+				syncFunction.setStrategy(determineStrategy(connection, forward));
 				syncFunction.setColumnsToMigrate(columns);
 				syncFunctions.put(sourceRefId, targetRefId, syncFunction);
 
-				log.info("Creating sync function: {} for table: {}", syncFunction.getFunctionName(), sourceRefId);
-				PostgresqlMigrator.execute(connection, syncFunction.createFunctionStatement());
+				if (syncFunction.isInstalled()) {
+					log.info("Creating sync function: {} for table: {}", syncFunction.getFunctionName(), sourceRefId);
+					PostgresqlMigrator.execute(connection, syncFunction.createFunctionStatement());
 
-				log.info("Creating trigger: {} for table: {}", syncFunction.getTriggerName(), sourceRefId);
-				PostgresqlMigrator.execute(connection, syncFunction.createTriggerStatement());
+					log.info("Creating trigger: {} for table: {}", syncFunction.getTriggerName(), sourceRefId);
+					PostgresqlMigrator.execute(connection, syncFunction.createTriggerStatement());
+				}
 
 				Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(source, target);
 				refLog.addSync(syncFunction.getTriggerName(), syncFunction.getFunctionName(), columnMapping);
+
+				if (syncFunction.getStrategy() == SyncFunction.Strategy.QUEUED) {
+					changeQueue.register(syncFunction);
+				}
+				else if (syncFunction.getStrategy() == SyncFunction.Strategy.REPLICATED) {
+					changeStream.register(syncFunction);
+				}
 			}
 			else {
-				syncFunction.setColumnsToMigrate(columns);
+				// The ChangeQueueApplier or LogicalChangeStream may concurrently be reading the columns of the sync
+				// function.
+				synchronized (syncFunction) {
+					syncFunction.setColumnsToMigrate(columns);
+				}
 
-				log.info("Updating sync function: {} for table: {}", syncFunction.getFunctionName(), sourceRefId);
-				PostgresqlMigrator.execute(connection, syncFunction.createFunctionStatement());
+				if (syncFunction.isInstalled()) {
+					log.info("Updating sync function: {} for table: {}", syncFunction.getFunctionName(), sourceRefId);
+					replaceSyncFunction(connection, syncFunction);
+				}
 
 				TableRef sourceTable = refLog.getTableRefById(sourceRefId);
 				sourceTable.getOutboundSyncs().stream()
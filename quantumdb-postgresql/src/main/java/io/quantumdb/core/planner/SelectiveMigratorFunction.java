@@ -8,8 +8,10 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.quantumdb.core.planner.MigratorFunction.Stage;
+import io.quantumdb.core.planner.MigratorFunction.Strategy;
 import io.quantumdb.core.schema.definitions.Column;
 import io.quantumdb.core.schema.definitions.ForeignKey;
 import io.quantumdb.core.schema.definitions.Identity;
@@ -26,52 +28,63 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class SelectiveMigratorFunction {
 
+	/**
+	 * The first parameter of every migrator function, which limits the amount of records processed per invocation.
+	 * The input parameters are unnamed and referred to by their position, since a named parameter would be
+	 * ambiguous in queries on tables with a column of the same name.
+	 */
+	private static final String BATCH_SIZE_PARAMETER = "$1";
+
+	/**
+	 * The prefix of the output parameters through which every migrator function returns the last processed identity.
+	 * Output parameters can't be referred to by their position, so they use a prefix which user columns won't have.
+	 */
+	private static final String LAST_IDENTITY_PREFIX = "_qdb_last_";
+
+	/**
+	 * The output parameter through which every migrator function returns the amount of records it processed.
+	 */
+	private static final String PROCESSED_PARAMETER = "_qdb_processed";
+
 	static MigratorFunction createMigrator(NullRecords nullRecords, RefLog refLog, Table source, Table target,
-			Version from, Version to, long batchSize, Stage stage, Set<String> migratedColumns,
+			Version from, Version to, Stage stage, Strategy strategy, Set<String> migratedColumns,
 			Set<String> columnsToBeMigrated) {
 
 		if (migratedColumns.isEmpty()) {
-			return createInsertMigrator(nullRecords, refLog, source, target, from, to, batchSize, stage, columnsToBeMigrated);
+			if (strategy == Strategy.SET_BASED) {
+				return createSetBasedInsertMigrator(nullRecords, refLog, source, target, stage, columnsToBeMigrated);
+			}
+			return createInsertMigrator(nullRecords, refLog, source, target, from, to, stage, columnsToBeMigrated);
 		}
 		else {
-			return createUpdateMigrator(refLog, source, target, from, to, batchSize, stage, columnsToBeMigrated);
+			if (strategy == Strategy.SET_BASED) {
+				return createSetBasedUpdateMigrator(refLog, source, target, stage, columnsToBeMigrated);
+			}
+			return createUpdateMigrator(refLog, source, target, from, to, stage, columnsToBeMigrated);
 		}
 	}
 
 	private static MigratorFunction createUpdateMigrator(RefLog refLog, Table source, Table target, Version from,
-			Version to, long batchSize, Stage stage, Set<String> columnsToBeMigrated) {
+			Version to, Stage stage, Set<String> columnsToBeMigrated) {
 
 		List<Column> identityColumns = source.getPrimaryKeyColumns();
 		Map<String, String> functionParameterMapping = Maps.newHashMap();
 		for (int i = 0; i < identityColumns.size(); i++) {
-			functionParameterMapping.put(identityColumns.get(i).getName(), "q" + i);
+			functionParameterMapping.put(identityColumns.get(i).getName(), getIdentityParameter(i));
 		}
 
 		List<String> identityColumnNames = identityColumns.stream()
 				.map(column -> "\"" + column.getName() + "\"")
 				.collect(Collectors.toList());
 
-		List<String> functionParameters = identityColumns.stream()
-				.map(column -> functionParameterMapping.get(column.getName()) + " " + column.getType().toString())
-				.collect(Collectors.toList());
-
 		String functionName = "migrator_" + RandomHasher.generateHash();
 
 		QueryBuilder createStatement = new QueryBuilder();
-
-		switch (stage) {
-			case INITIAL:
-				createStatement.append("CREATE FUNCTION " + functionName + "()");
-				break;
-			case CONSECUTIVE:
-				createStatement.append(
-						"CREATE FUNCTION " + functionName + "(" + Joiner.on(", ").join(functionParameters) + ")");
-				break;
-		}
-
-		createStatement.append("  RETURNS text AS $$");
+		createStatement.append(createFunctionHeader(functionName, stage, identityColumns));
+		createStatement.append("  AS $$");
 		createStatement.append("  DECLARE r record;");
 		createStatement.append("  BEGIN");
+		createStatement.append("	" + PROCESSED_PARAMETER + " := 0;");
 		createStatement.append("	FOR r IN");
 		createStatement.append("	  SELECT * FROM " + source.getName());
 
@@ -87,31 +100,18 @@ public class SelectiveMigratorFunction {
 				for (int j = 0; j < i; j++) {
 					String identityColumnName = identityColumns.get(j).getName();
 					String value = functionParameterMapping.get(identityColumnName);
-					createStatement.append(identityColumnName + " = " + value);
+					createStatement.append(source.getName() + ".\"" + identityColumnName + "\" = " + value);
 					createStatement.append("AND");
 				}
 
 				String identityColumnName = identityColumns.get(i).getName();
 				String value = functionParameterMapping.get(identityColumnName);
-				createStatement.append(identityColumnName + " > " + value);
+				createStatement.append(source.getName() + ".\"" + identityColumnName + "\" > " + value);
 				createStatement.append(")");
 			}
 		}
 
-		TableRef sourceRef = refLog.getTableRefById(source.getName());
-		TableRef targetRef = refLog.getTableRefById(target.getName());
-		Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(sourceRef, targetRef);
-
-		Map<String, String> columnsToMigrate = columnMapping.entrySet().stream()
-				.filter(entry -> columnsToBeMigrated.contains(entry.getKey().getName()))
-				.map(entry -> {
-					String newColumnName = entry.getValue().getName();
-					Column newColumn = target.getColumn(newColumnName);
-					return new SimpleImmutableEntry<>(newColumn, entry.getKey().getName());
-				})
-				.collect(Collectors.toMap(entry -> entry.getKey().getName(),
-						SimpleImmutableEntry::getValue));
-
+		Map<String, String> columnsToMigrate = getColumnsToUpdate(refLog, source, target, columnsToBeMigrated);
 		if (columnsToMigrate.isEmpty()) {
 			return null;
 		}
@@ -119,119 +119,53 @@ public class SelectiveMigratorFunction {
 		String updates = columnsToMigrate.keySet().stream()
 				.map(columnName -> {
 					String oldColumnName = columnsToMigrate.get(columnName);
-					return columnName + " = r." + oldColumnName;
+					return "\"" + columnName + "\" = r.\"" + oldColumnName + "\"";
 				})
 				.collect(Collectors.joining(", "));
 
-		String identityCondition = source.getPrimaryKeyColumns().stream()
-				.map(column -> {
-					String mappedColumnName = columnMapping.entrySet().stream()
-							.filter(entry -> entry.getKey().getName().equals(column.getName()))
-							.map(entry -> entry.getValue().getName())
-							.findFirst().get();
-
-					return mappedColumnName + " = r." + column.getName();
-				})
-				.collect(Collectors.joining(" AND "));
+		String identityCondition = getIdentityCondition(refLog, source, target, "t.", "r.");
+		String changedCondition = getChangedCondition(target, columnsToMigrate, "t.", "r.");
 
 		createStatement.append("		ORDER BY " + Joiner.on(" ASC, ").join(identityColumnNames) + " ASC");
-		createStatement.append("		LIMIT " + batchSize);
+		createStatement.append("		LIMIT " + BATCH_SIZE_PARAMETER);
 		createStatement.append("	LOOP");
 		createStatement.append("	  BEGIN");
-		createStatement.append("		UPDATE " + target.getName());
+		createStatement.append("		UPDATE " + target.getName() + " t");
 		createStatement.append("		  SET " + updates);
-		createStatement.append("		  WHERE  " + identityCondition + ";");
+		createStatement.append("		  WHERE  " + identityCondition);
+		createStatement.append("			AND " + changedCondition + ";");
 		createStatement.append("	  EXCEPTION WHEN unique_violation THEN END;");
+		createStatement.append(createLastIdentityAssignment(identityColumnNames));
 		createStatement.append("	END LOOP;");
-		createStatement.append("  RETURN CONCAT('(', r." + Joiner.on(", ',', r.").join(identityColumnNames) + ", ')');");
 		createStatement.append("END; $$ LANGUAGE 'plpgsql';");
 
-		QueryBuilder dropStatement = new QueryBuilder();
-		switch (stage) {
-			case INITIAL:
-				dropStatement.append("DROP FUNCTION " + functionName + "();");
-				break;
-			case CONSECUTIVE:
-				List<String> parameterTypes = identityColumns.stream()
-						.map(column -> column.getType().toString())
-						.collect(Collectors.toList());
-
-				dropStatement.append("DROP FUNCTION " + functionName + "(" + Joiner.on(",").join(parameterTypes) + ");");
-				break;
-		}
-
-		return new MigratorFunction(functionName, identityColumnNames, createStatement.toString(), dropStatement.toString());
+		String dropStatement = createDropStatement(functionName, stage, identityColumns);
+		return new MigratorFunction(functionName, identityColumnNames, createStatement.toString(), dropStatement);
 	}
 
 	private static MigratorFunction createInsertMigrator(NullRecords nullRecords, RefLog refLog, Table source,
-			Table target, Version from, Version to, long batchSize, Stage stage, Set<String> columns) {
+			Table target, Version from, Version to, Stage stage, Set<String> columns) {
 
 		List<Column> identityColumns = source.getPrimaryKeyColumns();
 		Map<String, String> functionParameterMapping = Maps.newHashMap();
 		for (int i = 0; i < identityColumns.size(); i++) {
-			functionParameterMapping.put(identityColumns.get(i).getName(), "q" + i);
+			functionParameterMapping.put(identityColumns.get(i).getName(), getIdentityParameter(i));
 		}
 
 		List<String> identityColumnNames = identityColumns.stream()
 				.map(column -> "\"" + column.getName() + "\"")
 				.collect(Collectors.toList());
 
-		List<String> functionParameters = identityColumns.stream()
-				.map(column -> functionParameterMapping.get(column.getName()) + " " + column.getType().toString())
-				.collect(Collectors.toList());
-
-		TableRef sourceRef = refLog.getTableRefById(source.getName());
-		TableRef targetRef = refLog.getTableRefById(target.getName());
-		Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(sourceRef, targetRef);
-
-		Map<String, String> values = columnMapping.entrySet().stream()
-				.filter(entry -> columns.contains(entry.getKey().getName()))
-				.collect(Collectors.toMap(entry -> entry.getValue().getName(),
-						entry -> "r." + entry.getKey().getName(),
-						(u, v) -> { throw new IllegalStateException(String.format("Duplicate key %s", u)); },
-						Maps::newLinkedHashMap));
-
-		for (ForeignKey foreignKey : target.getForeignKeys()) {
-			List<String> foreignKeyColumns = foreignKey.getReferencingColumns();
-
-			if (foreignKey.isNotNullable() && !values.keySet().containsAll(foreignKeyColumns)) {
-				Table referredTable = foreignKey.getReferredTable();
-				Identity identity = nullRecords.getIdentity(referredTable);
-				LinkedHashMap<String, String> columnMappings = foreignKey.getColumnMapping();
-				for (String columnName : foreignKeyColumns) {
-					String referencedColumn = columnMappings.get(columnName);
-					Column column = target.getColumn(columnName);
-
-					String value = column.getDefaultValue();
-					if (identity != null) {
-						value = identity.getValue(referencedColumn).toString();
-						if (column.getType().isRequireQuotes()) {
-							value = "'" + value + "'";
-						}
-					}
-
-					values.put(columnName, value);
-				}
-			}
-		}
+		Map<String, String> values = getInsertValues(nullRecords, refLog, source, target, columns, "r.");
 
 		String functionName = "migrator_" + RandomHasher.generateHash();
 
 		QueryBuilder createStatement = new QueryBuilder();
-
-		switch (stage) {
-			case INITIAL:
-				createStatement.append("CREATE FUNCTION " + functionName + "()");
-				break;
-			case CONSECUTIVE:
-				createStatement.append(
-						"CREATE FUNCTION " + functionName + "(" + Joiner.on(", ").join(functionParameters) + ")");
-				break;
-		}
-
-		createStatement.append("  RETURNS text AS $$");
+		createStatement.append(createFunctionHeader(functionName, stage, identityColumns));
+		createStatement.append("  AS $$");
 		createStatement.append("  DECLARE r record;");
 		createStatement.append("  BEGIN");
+		createStatement.append("	" + PROCESSED_PARAMETER + " := 0;");
 		createStatement.append("	FOR r IN");
 		createStatement.append("	  SELECT * FROM " + source.getName());
 
@@ -247,46 +181,308 @@ public class SelectiveMigratorFunction {
 				for (int j = 0; j < i; j++) {
 					String identityColumnName = identityColumns.get(j).getName();
 					String value = functionParameterMapping.get(identityColumnName);
-					createStatement.append(identityColumnName + " = " + value);
+					createStatement.append(source.getName() + ".\"" + identityColumnName + "\" = " + value);
 					createStatement.append("AND");
 				}
 
 				String identityColumnName = identityColumns.get(i).getName();
 				String value = functionParameterMapping.get(identityColumnName);
-				createStatement.append(identityColumnName + " > " + value);
+				createStatement.append(source.getName() + ".\"" + identityColumnName + "\" > " + value);
 				createStatement.append(")");
 			}
 		}
 
 		createStatement.append("		ORDER BY " + Joiner.on(" ASC, ").join(identityColumnNames) + " ASC");
-		createStatement.append("		LIMIT " + batchSize);
+		createStatement.append("		LIMIT " + BATCH_SIZE_PARAMETER);
 		createStatement.append("	LOOP");
 		createStatement.append("	  BEGIN");
 		createStatement.append("		INSERT INTO " + target.getName());
 		createStatement.append("		  (" + values.keySet().stream().map(input -> "\"" + input + "\"").collect(Collectors.joining(", ")) + ")");
 		createStatement.append("		  VALUES (" + Joiner.on(", ").join(values.values()) + ");");
 		createStatement.append("	  EXCEPTION WHEN unique_violation THEN END;");
+		createStatement.append(createLastIdentityAssignment(identityColumnNames));
 		createStatement.append("	END LOOP;");
-		createStatement.append("  RETURN CONCAT('(', r." + Joiner.on(", ',', r.").join(identityColumnNames) + ", ')');");
 		createStatement.append("END; $$ LANGUAGE 'plpgsql';");
 
+		String dropStatement = createDropStatement(functionName, stage, identityColumns);
+		return new MigratorFunction(functionName, identityColumnNames, createStatement.toString(), dropStatement);
+	}
+
+	/**
+	 * Creates a migrator function which copies an entire batch of records using a single INSERT statement. Records
+	 * which already exist in the target table are skipped using ON CONFLICT DO NOTHING, and the batch is selected
+	 * using a row-value comparison on the identity columns, which can be answered using the primary key index.
+	 */
+	private static MigratorFunction createSetBasedInsertMigrator(NullRecords nullRecords, RefLog refLog,
+			Table source, Table target, Stage stage, Set<String> columns) {
 
-		QueryBuilder dropStatement = new QueryBuilder();
+		List<Column> identityColumns = source.getPrimaryKeyColumns();
+		List<String> identityColumnNames = identityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.toList());
+
+		Map<String, String> values = getInsertValues(nullRecords, refLog, source, target, columns, "batch.");
 
+		String functionName = "migrator_" + RandomHasher.generateHash();
+
+		QueryBuilder createStatement = new QueryBuilder();
+		createStatement.append(createFunctionHeader(functionName, stage, identityColumns));
+		createStatement.append("  AS $$");
+		createStatement.append(createBatchSelection(source, stage, identityColumnNames));
+		createStatement.append("	, inserted AS (");
+		createStatement.append("	  INSERT INTO " + target.getName());
+		createStatement.append("		(" + values.keySet().stream().map(input -> "\"" + input + "\"").collect(Collectors.joining(", ")) + ")");
+		createStatement.append("	  SELECT " + Joiner.on(", ").join(values.values()) + " FROM batch");
+		createStatement.append("	  ON CONFLICT DO NOTHING");
+		createStatement.append("	)");
+		createStatement.append(createLastIdentitySelection(identityColumnNames));
+		createStatement.append("$$ LANGUAGE 'sql';");
+
+		String dropStatement = createDropStatement(functionName, stage, identityColumns);
+		return new MigratorFunction(functionName, identityColumnNames, createStatement.toString(), dropStatement);
+	}
+
+	/**
+	 * Creates a migrator function which updates an entire batch of records using a single UPDATE ... FROM
+	 * statement, selecting the batch in the same way as the set-based insert migrator.
+	 */
+	private static MigratorFunction createSetBasedUpdateMigrator(RefLog refLog, Table source, Table target,
+			Stage stage, Set<String> columnsToBeMigrated) {
+
+		List<Column> identityColumns = source.getPrimaryKeyColumns();
+		List<String> identityColumnNames = identityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.toList());
+
+		Map<String, String> columnsToMigrate = getColumnsToUpdate(refLog, source, target, columnsToBeMigrated);
+		if (columnsToMigrate.isEmpty()) {
+			return null;
+		}
+
+		String updates = columnsToMigrate.keySet().stream()
+				.map(columnName -> "\"" + columnName + "\" = batch.\"" + columnsToMigrate.get(columnName) + "\"")
+				.collect(Collectors.joining(", "));
+
+		String identityCondition = getIdentityCondition(refLog, source, target, "t.", "batch.");
+		String changedCondition = getChangedCondition(target, columnsToMigrate, "t.", "batch.");
+
+		String functionName = "migrator_" + RandomHasher.generateHash();
+
+		QueryBuilder createStatement = new QueryBuilder();
+		createStatement.append(createFunctionHeader(functionName, stage, identityColumns));
+		createStatement.append("  AS $$");
+		createStatement.append(createBatchSelection(source, stage, identityColumnNames));
+		createStatement.append("	, updated AS (");
+		createStatement.append("	  UPDATE " + target.getName() + " t");
+		createStatement.append("		SET " + updates);
+		createStatement.append("		FROM batch");
+		createStatement.append("		WHERE " + identityCondition);
+		createStatement.append("		  AND " + changedCondition);
+		createStatement.append("	)");
+		createStatement.append(createLastIdentitySelection(identityColumnNames));
+		createStatement.append("$$ LANGUAGE 'sql';");
+
+		String dropStatement = createDropStatement(functionName, stage, identityColumns);
+		return new MigratorFunction(functionName, identityColumnNames, createStatement.toString(), dropStatement);
+	}
+
+	private static String createBatchSelection(Table source, Stage stage, List<String> identityColumnNames) {
+		QueryBuilder builder = new QueryBuilder();
+		builder.append("	WITH batch AS (");
+		builder.append("	  SELECT * FROM " + source.getName());
+
+		if (stage != Stage.INITIAL) {
+			List<String> parameters = Lists.newArrayList();
+			for (int i = 0; i < identityColumnNames.size(); i++) {
+				parameters.add(getIdentityParameter(i));
+			}
+			builder.append("		WHERE (" + Joiner.on(", ").join(identityColumnNames) + ") > ("
+					+ Joiner.on(", ").join(parameters) + ")");
+		}
+
+		builder.append("		ORDER BY " + Joiner.on(" ASC, ").join(identityColumnNames) + " ASC");
+		builder.append("		LIMIT " + BATCH_SIZE_PARAMETER);
+		builder.append("	)");
+		return builder.toString();
+	}
+
+	/**
+	 * Assigns the identity of the record which was processed in the current iteration of a row-by-row migrator
+	 * to its output parameters, and counts it. The identity remains NULL if no records were processed.
+	 */
+	private static String createLastIdentityAssignment(List<String> identityColumnNames) {
+		QueryBuilder builder = new QueryBuilder();
+		for (int i = 0; i < identityColumnNames.size(); i++) {
+			builder.append("	  " + LAST_IDENTITY_PREFIX + i + " := r." + identityColumnNames.get(i) + ";");
+		}
+		builder.append("	  " + PROCESSED_PARAMETER + " := " + PROCESSED_PARAMETER + " + 1;");
+		return builder.toString();
+	}
+
+	private static String createLastIdentitySelection(List<String> identityColumnNames) {
+		return new QueryBuilder()
+				.append("	SELECT batch." + Joiner.on(", batch.").join(identityColumnNames) + ",")
+				.append("	  (SELECT COUNT(*) FROM batch)")
+				.append("	  FROM batch")
+				.append("	  ORDER BY batch." + Joiner.on(" DESC, batch.").join(identityColumnNames) + " DESC")
+				.append("	  LIMIT 1;")
+				.toString();
+	}
+
+	/**
+	 * Creates the header of a migrator function. Every migrator function returns the identity of the last record
+	 * it processed through its output parameters, so that it can be read without parsing it, followed by the amount
+	 * of records it processed.
+	 */
+	private static String createFunctionHeader(String functionName, Stage stage, List<Column> identityColumns) {
+		List<String> functionParameters = Lists.newArrayList("bigint");
 		switch (stage) {
 			case INITIAL:
-				dropStatement.append("DROP FUNCTION " + functionName + "();");
 				break;
+			case CONSECUTIVE:
+				for (int i = 0; i < identityColumns.size(); i++) {
+					functionParameters.add(identityColumns.get(i).getType().toString());
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported stage: " + stage);
+		}
+
+		for (int i = 0; i < identityColumns.size(); i++) {
+			functionParameters.add("OUT " + LAST_IDENTITY_PREFIX + i + " " + identityColumns.get(i).getType().toString());
+		}
+		functionParameters.add("OUT " + PROCESSED_PARAMETER + " bigint");
+		return "CREATE FUNCTION " + functionName + "(" + Joiner.on(", ").join(functionParameters) + ")";
+	}
+
+	/**
+	 * @return A reference to the input parameter holding the value of the identity column at the specified index,
+	 * from which a CONSECUTIVE migrator function continues. These follow the batch size parameter.
+	 */
+	private static String getIdentityParameter(int index) {
+		return "$" + (index + 2);
+	}
+
+	private static String createDropStatement(String functionName, Stage stage, List<Column> identityColumns) {
+		switch (stage) {
+			case INITIAL:
+				return "DROP FUNCTION " + functionName + "(bigint);";
 			case CONSECUTIVE:
 				List<String> parameterTypes = identityColumns.stream()
 						.map(column -> column.getType().toString())
 						.collect(Collectors.toList());
 
-				dropStatement.append("DROP FUNCTION " + functionName + "(" + Joiner.on(",").join(parameterTypes) + ");");
-				break;
+				return "DROP FUNCTION " + functionName + "(bigint," + Joiner.on(",").join(parameterTypes) + ");";
+			default:
+				throw new IllegalArgumentException("Unsupported stage: " + stage);
+		}
+	}
+
+	/**
+	 * @return A map of target column names to the source column names whose values they should be updated with.
+	 */
+	private static Map<String, String> getColumnsToUpdate(RefLog refLog, Table source, Table target,
+			Set<String> columnsToBeMigrated) {
+
+		TableRef sourceRef = refLog.getTableRefById(source.getName());
+		TableRef targetRef = refLog.getTableRefById(target.getName());
+		Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(sourceRef, targetRef);
+
+		return columnMapping.entrySet().stream()
+				.filter(entry -> columnsToBeMigrated.contains(entry.getKey().getName()))
+				.map(entry -> {
+					String newColumnName = entry.getValue().getName();
+					Column newColumn = target.getColumn(newColumnName);
+					return new SimpleImmutableEntry<>(newColumn, entry.getKey().getName());
+				})
+				.collect(Collectors.toMap(entry -> entry.getKey().getName(),
+						SimpleImmutableEntry::getValue));
+	}
+
+	/**
+	 * @return A condition which only matches records in the target table whose values differ from the values of the
+	 * source record they are updated with. Skipping unchanged records avoids writing new row versions (and WAL) for
+	 * records which were already brought up to date, for instance by the sync functions.
+	 */
+	private static String getChangedCondition(Table target, Map<String, String> columnsToMigrate,
+			String targetPrefix, String sourcePrefix) {
+
+		String targetValues = columnsToMigrate.keySet().stream()
+				.map(columnName -> targetPrefix + "\"" + columnName + "\"")
+				.collect(Collectors.joining(", "));
+
+		String sourceValues = columnsToMigrate.entrySet().stream()
+				.map(entry -> "CAST(" + sourcePrefix + "\"" + entry.getValue() + "\" AS "
+						+ target.getColumn(entry.getKey()).getType() + ")")
+				.collect(Collectors.joining(", "));
+
+		return "(" + targetValues + ") IS DISTINCT FROM (" + sourceValues + ")";
+	}
+
+	/**
+	 * @return A condition which matches records in the target table to the source record with the same identity.
+	 */
+	private static String getIdentityCondition(RefLog refLog, Table source, Table target, String targetPrefix,
+			String sourcePrefix) {
+
+		TableRef sourceRef = refLog.getTableRefById(source.getName());
+		TableRef targetRef = refLog.getTableRefById(target.getName());
+		Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(sourceRef, targetRef);
+
+		return source.getPrimaryKeyColumns().stream()
+				.map(column -> {
+					String mappedColumnName = columnMapping.entrySet().stream()
+							.filter(entry -> entry.getKey().getName().equals(column.getName()))
+							.map(entry -> entry.getValue().getName())
+							.findFirst().get();
+
+					return targetPrefix + "\"" + mappedColumnName + "\" = " + sourcePrefix + "\"" + column.getName() + "\"";
+				})
+				.collect(Collectors.joining(" AND "));
+	}
+
+	/**
+	 * @return A map of target column names to the expressions which produce their values for a source record.
+	 */
+	static Map<String, String> getInsertValues(NullRecords nullRecords, RefLog refLog, Table source,
+			Table target, Set<String> columns, String sourcePrefix) {
+
+		TableRef sourceRef = refLog.getTableRefById(source.getName());
+		TableRef targetRef = refLog.getTableRefById(target.getName());
+		Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(sourceRef, targetRef);
+
+		Map<String, String> values = columnMapping.entrySet().stream()
+				.filter(entry -> columns.contains(entry.getKey().getName()))
+				.collect(Collectors.toMap(entry -> entry.getValue().getName(),
+						entry -> sourcePrefix + entry.getKey().getName(),
+						(u, v) -> { throw new IllegalStateException(String.format("Duplicate key %s", u)); },
+						Maps::newLinkedHashMap));
+
+		for (ForeignKey foreignKey : target.getForeignKeys()) {
+			List<String> foreignKeyColumns = foreignKey.getReferencingColumns();
+
+			if (foreignKey.isNotNullable() && !values.keySet().containsAll(foreignKeyColumns)) {
+				Table referredTable = foreignKey.getReferredTable();
+				Identity identity = nullRecords.getIdentity(referredTable);
+				LinkedHashMap<String, String> columnMappings = foreignKey.getColumnMapping();
+				for (String columnName : foreignKeyColumns) {
+					String referencedColumn = columnMappings.get(columnName);
+					Column column = target.getColumn(columnName);
+
+					String value = column.getDefaultValue();
+					if (identity != null) {
+						value = identity.getValue(referencedColumn).toString();
+						if (column.getType().isRequireQuotes()) {
+							value = "'" + value + "'";
+						}
+					}
+
+					values.put(columnName, value);
+				}
+			}
 		}
 
-		return new MigratorFunction(functionName, identityColumnNames, createStatement.toString(), dropStatement.toString());
+		return values;
 	}
 
 }
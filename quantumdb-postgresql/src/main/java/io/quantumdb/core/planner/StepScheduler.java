@@ -0,0 +1,158 @@
+package io.quantumdb.core.planner;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.quantumdb.core.backends.DatabaseMigrator.MigrationException;
+import io.quantumdb.core.backends.planner.Operation.Type;
+import io.quantumdb.core.backends.planner.Step;
+import io.quantumdb.core.schema.definitions.Table;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes the Steps of a Plan on a pool of workers, starting every Step as soon as its dependencies have been
+ * executed. On top of the dependencies recorded in the Plan, the following orderings are preserved:
+ * <ul>
+ *     <li>ADD_NULL Steps are executed on their own, and before any COPY Step.</li>
+ *     <li>DROP_NULL Steps are executed on their own, and only after all other Steps.</li>
+ *     <li>Steps which touch the same table are never executed concurrently.</li>
+ * </ul>
+ * Among the Steps which can be started, the ones listed first in the Plan are started first. With a single worker
+ * this executes the Steps in the same order as repeatedly executing {@link io.quantumdb.core.backends.planner.Plan#nextStep()}.
+ */
+@Slf4j
+class StepScheduler {
+
+	@FunctionalInterface
+	interface StepExecutor {
+		void execute(Step step) throws MigrationException, InterruptedException;
+	}
+
+	private final List<Step> steps;
+	private final int workers;
+	private final StepExecutor executor;
+	private final Set<Step> running;
+
+	StepScheduler(List<Step> steps, int workers, StepExecutor executor) {
+		this.steps = ImmutableList.copyOf(steps);
+		this.workers = Math.max(1, workers);
+		this.executor = executor;
+		this.running = Sets.newHashSet();
+	}
+
+	void run() throws MigrationException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+				.setNameFormat("quantumdb-step-%d")
+				.build());
+
+		try {
+			CompletionService<Step> completion = new ExecutorCompletionService<>(pool);
+			while (true) {
+				for (Step step : selectExecutableSteps()) {
+					log.info("Scheduling step: {}", step);
+					running.add(step);
+					completion.submit(() -> {
+						executor.execute(step);
+						return step;
+					});
+				}
+
+				if (running.isEmpty()) {
+					break;
+				}
+
+				Step step = awaitCompletion(completion.take());
+				running.remove(step);
+				step.markAsExecuted();
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Step awaitCompletion(Future<Step> future) throws MigrationException, InterruptedException {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof MigrationException) {
+				throw (MigrationException) cause;
+			}
+			else if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new MigrationException(cause);
+		}
+	}
+
+	/**
+	 * @return The Steps which can be started now, given the Steps which have been executed or are still running.
+	 */
+	List<Step> selectExecutableSteps() {
+		if (running.stream().anyMatch(this::isExclusive)) {
+			return ImmutableList.of();
+		}
+
+		boolean nullRecordsPending = steps.stream()
+				.anyMatch(step -> !step.isExecuted() && step.getOperation().getType() == Type.ADD_NULL);
+
+		Set<String> busyTables = Sets.newHashSet();
+		running.forEach(step -> busyTables.addAll(getTableNames(step)));
+
+		List<Step> selected = Lists.newArrayList();
+		for (Step step : steps) {
+			if (running.size() + selected.size() >= workers) {
+				break;
+			}
+			if (running.contains(step) || !step.canBeExecuted() || conflicts(step, busyTables)) {
+				continue;
+			}
+
+			if (isExclusive(step)) {
+				boolean allowed = step.getOperation().getType() == Type.ADD_NULL
+						|| steps.stream().allMatch(other -> other.isExecuted() || isExclusive(other));
+
+				if (allowed && running.isEmpty() && selected.isEmpty()) {
+					return ImmutableList.of(step);
+				}
+			}
+			else if (!nullRecordsPending) {
+				selected.add(step);
+				busyTables.addAll(getTableNames(step));
+			}
+		}
+		return selected;
+	}
+
+	private boolean conflicts(Step step, Set<String> busyTables) {
+		return getTableNames(step).stream().anyMatch(busyTables::contains);
+	}
+
+	private boolean isExclusive(Step step) {
+		Type type = step.getOperation().getType();
+		return type == Type.ADD_NULL || type == Type.DROP_NULL;
+	}
+
+	private Set<String> getTableNames(Step step) {
+		return step.getOperation().getTables().stream()
+				.map(Table::getName)
+				.collect(Collectors.toSet());
+	}
+
+}
@@ -1,7 +1,9 @@
 package io.quantumdb.core.planner;
 
+import static com.google.common.base.Preconditions.checkState;
 import static io.quantumdb.core.utils.RandomHasher.generateHash;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,7 +12,9 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.quantumdb.core.schema.definitions.Catalog;
 import io.quantumdb.core.schema.definitions.Column;
@@ -28,6 +32,23 @@ import lombok.Setter;
 @Data
 public class SyncFunction {
 
+	/**
+	 * PER_ROW sync functions are fired for every inserted, updated, or deleted record, and upsert that record into
+	 * the target table, which requires PostgreSQL 9.5 or up. PER_ROW_WITH_RETRIES sync functions do the same for
+	 * older servers, by retrying an UPDATE and INSERT until either succeeds. PER_STATEMENT sync functions are fired
+	 * once per statement, and apply all changes of that statement using set-based statements on the transition
+	 * tables of the triggers, which requires PostgreSQL 10 or up. QUEUED sync functions only append the identities of
+	 * changed records to an unlogged queue table, which is applied to the target table outside of the transactions
+	 * of the application by a {@link ChangeQueueApplier}. REPLICATED sync functions don't install any triggers at all,
+	 * their changes are instead read from a logical replication slot by a {@link LogicalChangeStream}.
+	 */
+	public enum Strategy {
+		PER_ROW_WITH_RETRIES, PER_ROW, PER_STATEMENT, QUEUED, REPLICATED
+	}
+
+	private static final String NEW_ROWS = "new_rows";
+	private static final String OLD_ROWS = "old_rows";
+
 	private final TableRef source;
 	private final TableRef target;
 	private final String functionName;
@@ -37,6 +58,17 @@ public class SyncFunction {
 	private final NullRecords nullRecords;
 	private final Map<ColumnRef, ColumnRef> columnMapping;
 
+	private Strategy strategy = Strategy.PER_ROW;
+
+	@Setter(AccessLevel.NONE)
+	private ImmutableMap<String, String> mappedColumns;
+
+	@Setter(AccessLevel.NONE)
+	private ImmutableMap<String, String> fixedValues;
+
+	@Setter(AccessLevel.NONE)
+	private ImmutableList<Column> sourceIdentityColumns;
+
 	@Setter(AccessLevel.NONE)
 	private ImmutableMap<String, String> insertExpressions;
 
@@ -79,12 +111,14 @@ public class SyncFunction {
 				})
 				.collect(Collectors.toMap(entry -> entry.getKey().getName(), entry -> entry.getValue().getName()));
 
-		Map<String, String> expressions = mapping.entrySet().stream()
+		Map<String, String> mappedColumns = mapping.entrySet().stream()
 				.collect(Collectors.toMap(entry -> "\"" + entry.getValue() + "\"",
-						entry -> "NEW.\"" + entry.getKey() + "\"",
+						entry -> "\"" + entry.getKey() + "\"",
 						(u, v) -> { throw new IllegalStateException(String.format("Duplicate key %s", u)); },
 						Maps::newLinkedHashMap));
 
+		Map<String, String> fixedValues = Maps.newLinkedHashMap();
+
 		for (ForeignKey foreignKey : targetTable.getForeignKeys()) {
 			List<String> foreignKeyColumns = foreignKey.getReferencingColumns();
 
@@ -104,12 +138,17 @@ public class SyncFunction {
 						}
 					}
 
-					expressions.put("\"" + columnName + "\"", value);
+					fixedValues.put("\"" + columnName + "\"", value);
 				}
 			}
 		}
 
-		this.insertExpressions = ImmutableMap.copyOf(expressions);
+		this.sourceIdentityColumns = ImmutableList.copyOf(targetTable.getIdentityColumns().stream()
+				.map(column -> sourceTable.getColumn(reverseLookup(mapping, column.getName())))
+				.collect(Collectors.toList()));
+		this.mappedColumns = ImmutableMap.copyOf(mappedColumns);
+		this.fixedValues = ImmutableMap.copyOf(fixedValues);
+		this.insertExpressions = ImmutableMap.copyOf(createExpressions("NEW."));
 		this.updateExpressions = ImmutableMap.copyOf(insertExpressions);
 
 		this.updateIdentitiesForInserts = ImmutableMap.copyOf((Map<? extends String, ? extends String>)targetTable.getIdentityColumns().stream()
@@ -125,6 +164,17 @@ public class SyncFunction {
 						Maps::newLinkedHashMap)));
 	}
 
+	/**
+	 * @return The expressions for every column of the target table which is kept in sync, reading the values of
+	 * mapped columns from the source record with the specified prefix.
+	 */
+	private Map<String, String> createExpressions(String prefix) {
+		Map<String, String> expressions = Maps.newLinkedHashMap();
+		mappedColumns.forEach((targetColumn, sourceColumn) -> expressions.put(targetColumn, prefix + sourceColumn));
+		expressions.putAll(fixedValues);
+		return expressions;
+	}
+
 	private String reverseLookup(Map<String, String> mapping, String value) {
 		return mapping.entrySet().stream()
 				.filter(entry -> entry.getValue().equals(value))
@@ -133,7 +183,28 @@ public class SyncFunction {
 				.get();
 	}
 
+	/**
+	 * @return True if this sync function is implemented by a function and triggers in the database.
+	 */
+	public boolean isInstalled() {
+		return strategy != Strategy.REPLICATED;
+	}
+
 	public QueryBuilder createFunctionStatement() {
+		checkState(isInstalled(), "Sync function: " + functionName + " is not installed in the database.");
+		switch (strategy) {
+			case PER_STATEMENT:
+				return createStatementFunctionStatement();
+			case PER_ROW:
+				return createUpsertFunctionStatement();
+			case QUEUED:
+				return createQueuingFunctionStatement();
+			default:
+				return createRetryingFunctionStatement();
+		}
+	}
+
+	private QueryBuilder createRetryingFunctionStatement() {
 		return new QueryBuilder()
 				.append("CREATE OR REPLACE FUNCTION " + functionName + "()")
 				.append("RETURNS TRIGGER AS $$")
@@ -164,6 +235,241 @@ public class SyncFunction {
 				.append("$$ LANGUAGE 'plpgsql';");
 	}
 
+	/**
+	 * Creates a sync function which upserts every inserted or updated record into the target table. Unlike
+	 * retrying an UPDATE and INSERT, this doesn't enter a subtransaction for every record which is missing from the
+	 * target table.
+	 */
+	private QueryBuilder createUpsertFunctionStatement() {
+		List<String> identityColumns = getIdentityColumns();
+		List<String> sourceIdentityColumns = identityColumns.stream()
+				.map(mappedColumns::get)
+				.collect(Collectors.toList());
+		String identityChanged = createChangedCondition("OLD.", "NEW.", sourceIdentityColumns);
+
+		return new QueryBuilder()
+				.append("CREATE OR REPLACE FUNCTION " + functionName + "()")
+				.append("RETURNS TRIGGER AS $$")
+				.append("BEGIN")
+				.append("  IF TG_OP = 'DELETE' THEN")
+				.append("    DELETE FROM " + target.getRefId())
+				.append("      WHERE " + represent(updateIdentities, " = ", " AND ") + ";")
+				.append("  ELSE")
+				.append("    IF TG_OP = 'UPDATE' AND " + identityChanged + " THEN")
+				.append("      UPDATE " + target.getRefId())
+				.append("        SET " + represent(updateIdentitiesForInserts, " = ", ", "))
+				.append("        WHERE " + represent(updateIdentities, " = ", " AND ") + ";")
+				.append("    END IF;")
+				.append("    INSERT INTO " + target.getRefId())
+				.append("      (" + represent(insertExpressions, Entry::getKey, ", ") + ") VALUES")
+				.append("      (" + represent(insertExpressions, Entry::getValue, ", ") + ")")
+				.append("      " + createConflictClause(identityColumns) + ";")
+				.append("  END IF;")
+				.append("  RETURN NEW;")
+				.append("END;")
+				.append("$$ LANGUAGE 'plpgsql';");
+	}
+
+	public String getQueueName() {
+		return functionName + "_queue";
+	}
+
+	/**
+	 * Creates the queue table (if it doesn't exist yet), and a sync function which appends the identity of every
+	 * inserted, updated, or deleted record to it. When an update changes the identity of a record, both the old and
+	 * the new identity are appended.
+	 */
+	private QueryBuilder createQueuingFunctionStatement() {
+		String columns = sourceIdentityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.joining(", "));
+		String definitions = sourceIdentityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\" " + column.getType() + " NOT NULL")
+				.collect(Collectors.joining(", "));
+		List<String> sourceColumns = sourceIdentityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.toList());
+
+		return new QueryBuilder()
+				.append("CREATE UNLOGGED TABLE IF NOT EXISTS " + getQueueName())
+				.append("  (seq bigserial PRIMARY KEY, op char(1) NOT NULL, " + definitions + ");")
+				.append("CREATE OR REPLACE FUNCTION " + functionName + "()")
+				.append("RETURNS TRIGGER AS $$")
+				.append("BEGIN")
+				.append("  IF TG_OP = 'INSERT' THEN")
+				.append("    INSERT INTO " + getQueueName() + " (op, " + columns + ")")
+				.append("      VALUES ('I', " + prefix("NEW.", sourceColumns) + ");")
+				.append("  ELSIF TG_OP = 'UPDATE' THEN")
+				.append("    IF " + createChangedCondition("OLD.", "NEW.", sourceColumns) + " THEN")
+				.append("      INSERT INTO " + getQueueName() + " (op, " + columns + ")")
+				.append("        VALUES ('D', " + prefix("OLD.", sourceColumns) + ");")
+				.append("    END IF;")
+				.append("    INSERT INTO " + getQueueName() + " (op, " + columns + ")")
+				.append("      VALUES ('U', " + prefix("NEW.", sourceColumns) + ");")
+				.append("  ELSIF TG_OP = 'DELETE' THEN")
+				.append("    INSERT INTO " + getQueueName() + " (op, " + columns + ")")
+				.append("      VALUES ('D', " + prefix("OLD.", sourceColumns) + ");")
+				.append("  END IF;")
+				.append("  RETURN NULL;")
+				.append("END;")
+				.append("$$ LANGUAGE 'plpgsql';");
+	}
+
+	/**
+	 * Creates a statement which removes a batch of entries from the queue table, and brings the records they refer
+	 * to in the target table up to date with the current state of the source table: records which no longer exist in
+	 * the source table are deleted, all others are upserted. The statement returns the amount of entries which were
+	 * removed from the queue table.
+	 */
+	public QueryBuilder createApplyStatement(long batchSize) {
+		String columns = getSourceIdentityColumnList();
+		QueryBuilder builder = new QueryBuilder()
+				.append("WITH batch AS (")
+				.append("  DELETE FROM " + getQueueName())
+				.append("    WHERE seq IN (SELECT seq FROM " + getQueueName() + " ORDER BY seq LIMIT " + batchSize + ")")
+				.append("    RETURNING " + columns)
+				.append("), changed AS (")
+				.append("  SELECT DISTINCT " + columns + " FROM batch");
+
+		return appendApplyStatements(builder)
+				.append("SELECT COUNT(*) FROM batch;");
+	}
+
+	/**
+	 * Creates a statement which brings the records with the specified amount of identities (which are bound as
+	 * parameters, one value per identity column of the source table) in the target table up to date with the current
+	 * state of the source table, in the same way as {@link #createApplyStatement(long)}.
+	 */
+	public QueryBuilder createReplayStatement(int identities) {
+		String row = "(" + sourceIdentityColumns.stream()
+				.map(column -> "?::" + column.getType())
+				.collect(Collectors.joining(", ")) + ")";
+
+		QueryBuilder builder = new QueryBuilder()
+				.append("WITH changed AS (")
+				.append("  SELECT DISTINCT * FROM (VALUES " + String.join(", ", Collections.nCopies(identities, row)) + ")")
+				.append("    AS c (" + getSourceIdentityColumnList() + ")");
+
+		return appendApplyStatements(builder)
+				.append("SELECT COUNT(*) FROM changed;");
+	}
+
+	/**
+	 * Appends the statements which delete and upsert the records in the target table whose identities are selected
+	 * by the preceding "changed" query.
+	 */
+	private QueryBuilder appendApplyStatements(QueryBuilder builder) {
+		List<String> identityColumns = getIdentityColumns();
+		List<String> sourceColumns = sourceIdentityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.toList());
+
+		String deletedCondition = identityColumns.stream()
+				.map(column -> "t." + column + " = c." + mappedColumns.get(column))
+				.collect(Collectors.joining(" AND "));
+		String existingCondition = sourceColumns.stream()
+				.map(column -> "s." + column + " = c." + column)
+				.collect(Collectors.joining(" AND "));
+		Map<String, String> expressions = createExpressions("s.");
+
+		return builder
+				.append("), deleted AS (")
+				.append("  DELETE FROM " + target.getRefId() + " t")
+				.append("    USING changed c")
+				.append("    WHERE " + deletedCondition)
+				.append("      AND NOT EXISTS (SELECT 1 FROM " + source.getRefId() + " s WHERE " + existingCondition + ")")
+				.append("), upserted AS (")
+				.append("  INSERT INTO " + target.getRefId())
+				.append("    (" + represent(expressions, Entry::getKey, ", ") + ")")
+				.append("    SELECT " + represent(expressions, Entry::getValue, ", "))
+				.append("    FROM " + source.getRefId() + " s")
+				.append("    JOIN changed c ON " + existingCondition)
+				.append("    " + createConflictClause(identityColumns))
+				.append("    RETURNING 1")
+				.append(")");
+	}
+
+	private String getSourceIdentityColumnList() {
+		return sourceIdentityColumns.stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.joining(", "));
+	}
+
+	private static String prefix(String prefix, List<String> columns) {
+		return columns.stream()
+				.map(column -> prefix + column)
+				.collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Creates a sync function which applies all changes of a statement at once. Updates which change the identity
+	 * of a record are applied by deleting the record with the old identity, after which the new and updated records
+	 * are upserted into the target table.
+	 */
+	private QueryBuilder createStatementFunctionStatement() {
+		List<String> identityColumns = getIdentityColumns();
+
+		Map<String, String> expressions = createExpressions("n.");
+		String deletedCondition = identityColumns.stream()
+				.map(column -> "t." + column + " = o." + mappedColumns.get(column))
+				.collect(Collectors.joining(" AND "));
+		String retainedCondition = identityColumns.stream()
+				.map(column -> "n." + mappedColumns.get(column) + " = o." + mappedColumns.get(column))
+				.collect(Collectors.joining(" AND "));
+		return new QueryBuilder()
+				.append("CREATE OR REPLACE FUNCTION " + functionName + "()")
+				.append("RETURNS TRIGGER AS $$")
+				.append("BEGIN")
+				.append("  IF TG_OP = 'DELETE' THEN")
+				.append("    DELETE FROM " + target.getRefId() + " t")
+				.append("      USING " + OLD_ROWS + " o")
+				.append("      WHERE " + deletedCondition + ";")
+				.append("  ELSE")
+				.append("    IF TG_OP = 'UPDATE' THEN")
+				.append("      DELETE FROM " + target.getRefId() + " t")
+				.append("        USING " + OLD_ROWS + " o")
+				.append("        WHERE " + deletedCondition)
+				.append("          AND NOT EXISTS (SELECT 1 FROM " + NEW_ROWS + " n WHERE " + retainedCondition + ");")
+				.append("    END IF;")
+				.append("    INSERT INTO " + target.getRefId())
+				.append("      (" + represent(expressions, Entry::getKey, ", ") + ")")
+				.append("      SELECT " + represent(expressions, Entry::getValue, ", "))
+				.append("      FROM " + NEW_ROWS + " n")
+				.append("      " + createConflictClause(identityColumns) + ";")
+				.append("  END IF;")
+				.append("  RETURN NULL;")
+				.append("END;")
+				.append("$$ LANGUAGE 'plpgsql';");
+	}
+
+	private List<String> getIdentityColumns() {
+		Table targetTable = catalog.getTable(target.getRefId());
+		return targetTable.getIdentityColumns().stream()
+				.map(column -> "\"" + column.getName() + "\"")
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return An ON CONFLICT clause which updates the mapped columns of a record which already exists in the target
+	 * table, unless they already hold the new values. Columns which are not mapped keep their current values.
+	 */
+	private String createConflictClause(List<String> identityColumns) {
+		List<String> updatedColumns = mappedColumns.keySet().stream()
+				.filter(column -> !identityColumns.contains(column))
+				.collect(Collectors.toList());
+
+		String conflictTarget = "ON CONFLICT (" + String.join(", ", identityColumns) + ")";
+		if (updatedColumns.isEmpty()) {
+			return conflictTarget + " DO NOTHING";
+		}
+
+		String updates = updatedColumns.stream()
+				.map(column -> column + " = EXCLUDED." + column)
+				.collect(Collectors.joining(", "));
+		return conflictTarget + " DO UPDATE SET " + updates
+				+ " WHERE " + createChangedCondition(target.getRefId() + ".", "EXCLUDED.", updatedColumns);
+	}
+
 	private String represent(Map<String, String> inputs, String innerJoin, String entryJoin) {
 		return inputs.entrySet().stream()
 				.map(entry -> entry.getKey() + innerJoin + entry.getValue())
@@ -177,13 +483,62 @@ public class SyncFunction {
 	}
 
 	public QueryBuilder createTriggerStatement() {
+		checkState(isInstalled(), "Sync function: " + functionName + " is not installed in the database.");
+		if (strategy == Strategy.PER_STATEMENT) {
+			// Triggers with transition tables can only be fired by a single event, and cannot have a column list.
+			// Updates which don't change any mapped column are instead skipped by the ON CONFLICT clause.
+			return new QueryBuilder()
+					.append(createStatementTrigger("INSERT", "NEW TABLE AS " + NEW_ROWS))
+					.append(createStatementTrigger("UPDATE", "OLD TABLE AS " + OLD_ROWS + " NEW TABLE AS " + NEW_ROWS))
+					.append(createStatementTrigger("DELETE", "OLD TABLE AS " + OLD_ROWS));
+		}
+
+		// Updates are only synced when they change any of the mapped columns of the source table.
+		List<String> sourceColumns = Lists.newArrayList(mappedColumns.values());
 		return new QueryBuilder()
 				.append("CREATE TRIGGER " + triggerName)
-				.append("AFTER INSERT OR UPDATE OR DELETE")
+				.append("AFTER INSERT OR DELETE")
 				.append("ON " + source.getRefId())
 				.append("FOR EACH ROW")
 				.append("WHEN (pg_trigger_depth() = 0)")
+				.append("EXECUTE PROCEDURE " + functionName + "();")
+				.append("CREATE TRIGGER " + triggerName + "_update")
+				.append("AFTER UPDATE OF " + String.join(", ", sourceColumns))
+				.append("ON " + source.getRefId())
+				.append("FOR EACH ROW")
+				.append("WHEN (pg_trigger_depth() = 0 AND " + createChangedCondition("OLD.", "NEW.", sourceColumns) + ")")
 				.append("EXECUTE PROCEDURE " + functionName + "();");
 	}
 
+	/**
+	 * Drops the triggers of every strategy, not just the current one, so that switching strategies (for instance
+	 * when cutting over from the change queue) doesn't leave triggers behind which call the replaced function.
+	 */
+	public QueryBuilder createDropTriggerStatement() {
+		List<String> triggerNames = Lists.newArrayList(triggerName, triggerName + "_insert",
+				triggerName + "_update", triggerName + "_delete");
+
+		QueryBuilder builder = new QueryBuilder();
+		triggerNames.forEach(name -> builder.append("DROP TRIGGER IF EXISTS " + name + " ON " + source.getRefId() + ";"));
+		return builder;
+	}
+
+	private String createChangedCondition(String leftPrefix, String rightPrefix, List<String> columns) {
+		return "(" + columns.stream().map(column -> leftPrefix + column).collect(Collectors.joining(", "))
+				+ ") IS DISTINCT FROM ("
+				+ columns.stream().map(column -> rightPrefix + column).collect(Collectors.joining(", ")) + ")";
+	}
+
+	private String createStatementTrigger(String event, String transitionTables) {
+		return new QueryBuilder()
+				.append("CREATE TRIGGER " + triggerName + "_" + event.toLowerCase())
+				.append("AFTER " + event)
+				.append("ON " + source.getRefId())
+				.append("REFERENCING " + transitionTables)
+				.append("FOR EACH STATEMENT")
+				.append("WHEN (pg_trigger_depth() = 0)")
+				.append("EXECUTE PROCEDURE " + functionName + "();")
+				.toString();
+	}
+
 }
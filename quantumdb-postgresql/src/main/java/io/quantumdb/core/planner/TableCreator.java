@@ -42,6 +42,24 @@ public class TableCreator {
 		}
 	}
 
+	/**
+	 * Reserves free space on every page of the specified tables for records which are inserted from now on, so that
+	 * subsequent updates of those records can place the new row versions on the same page (HOT updates).
+	 */
+	public void setFillfactor(Connection connection, Collection<Table> tables, int fillfactor) throws SQLException {
+		for (Table table : tables) {
+			log.info("Setting fillfactor of table: {} to: {}", table.getName(), fillfactor);
+			execute(connection, new QueryBuilder("ALTER TABLE " + table.getName()
+					+ " SET (fillfactor = " + fillfactor + ");"));
+		}
+	}
+
+	public void resetFillfactor(Connection connection, Collection<Table> tables) throws SQLException {
+		for (Table table : tables) {
+			execute(connection, new QueryBuilder("ALTER TABLE " + table.getName() + " RESET (fillfactor);"));
+		}
+	}
+
 	private void createTable(Connection connection, Table table) throws SQLException {
 		log.info("Creating table: {}", table.getName());
 		Map<String, String> sequences = Maps.newHashMap();
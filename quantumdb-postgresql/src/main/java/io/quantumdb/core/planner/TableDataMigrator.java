@@ -1,267 +1,412 @@
 package io.quantumdb.core.planner;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Timestamp;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
-import com.google.common.base.Joiner;
-import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.quantumdb.core.backends.Backend;
+import io.quantumdb.core.migration.TableProgress;
 import io.quantumdb.core.planner.MigratorFunction.Stage;
-import io.quantumdb.core.schema.definitions.Column;
-import io.quantumdb.core.schema.definitions.ColumnType.Type;
+import io.quantumdb.core.planner.MigratorFunction.Strategy;
 import io.quantumdb.core.schema.definitions.Table;
 import io.quantumdb.core.utils.QueryBuilder;
 import io.quantumdb.core.versioning.RefLog;
 import io.quantumdb.core.versioning.Version;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGStatement;
 
 @Slf4j
 class TableDataMigrator {
 
-	private static final long BATCH_SIZE = 2_000;
-	private static final long WAIT_TIME = 50;
+	private static final long RANGES_PER_WORKER = 4;
+	private static final long SAMPLES_PER_RANGE = 100;
+
+	@Data
+	private static class TableCopy {
+		private final Table source;
+		private final Table target;
+		private final IdentityCursor cursor;
+		private final MigratorFunction initialMigrator;
+		private final MigratorFunction successiveMigrator;
+
+		/**
+		 * The expressions producing the values of the target columns, if records may be bulk copied using COPY,
+		 * or NULL otherwise.
+		 */
+		private final Map<String, String> bulkCopyValues;
+
+		private final TableProgress progress;
+	}
+
+	/**
+	 * Copies a batch of records by invoking the generated migrator functions. Both invocations are prepared once on
+	 * the connection of the copy, and executed with bound parameters using a server-side prepared statement, so that
+	 * every batch only needs to be executed rather than parsed and planned.
+	 */
+	private class FunctionCopyEngine implements CopyEngine {
+
+		private final TableCopy copy;
+		private PreparedStatement initialInvocation;
+		private PreparedStatement successiveInvocation;
+
+		private FunctionCopyEngine(TableCopy copy) {
+			this.copy = copy;
+		}
+
+		@Override
+		public Batch copyBatch(Connection connection, Object[] lastProcessedId, long batchSize)
+				throws SQLException {
+
+			IdentityCursor cursor = copy.getCursor();
+			PreparedStatement statement;
+			if (lastProcessedId == null) {
+				if (initialInvocation == null) {
+					String query = "SELECT * FROM " + copy.getInitialMigrator().getName() + "(?);";
+					initialInvocation = prepare(connection, query);
+				}
+				statement = initialInvocation;
+				statement.setLong(1, batchSize);
+			}
+			else {
+				if (successiveInvocation == null) {
+					String query = "SELECT * FROM " + copy.getSuccessiveMigrator().getName()
+							+ "(?, " + cursor.getPlaceholders() + ");";
+					successiveInvocation = prepare(connection, query);
+				}
+				statement = successiveInvocation;
+				statement.setLong(1, batchSize);
+				cursor.bind(statement, 2, lastProcessedId);
+			}
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					// Returns NULL if no records were returned, in which case we're done migrating data...
+					Object[] lastIdentity = cursor.read(resultSet, 1);
+					if (lastIdentity != null) {
+						return new Batch(lastIdentity, resultSet.getLong(cursor.size() + 1));
+					}
+				}
+				return null;
+			}
+		}
+
+		@Override
+		public void close() throws SQLException {
+			try {
+				if (initialInvocation != null) {
+					initialInvocation.close();
+				}
+			}
+			finally {
+				if (successiveInvocation != null) {
+					successiveInvocation.close();
+				}
+			}
+		}
+
+		private PreparedStatement prepare(Connection connection, String query) throws SQLException {
+			PreparedStatement statement = connection.prepareStatement(query);
+			if (statement.isWrapperFor(PGStatement.class)) {
+				statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+			}
+			return statement;
+		}
+
+	}
 
 	private final RefLog refLog;
 	private final Backend backend;
+	private final MigrationSettings settings;
 
-	TableDataMigrator(Backend backend, RefLog refLog) {
+	TableDataMigrator(Backend backend, RefLog refLog, MigrationSettings settings) {
 		this.backend = backend;
 		this.refLog = refLog;
+		this.settings = settings;
 	}
 
 	void migrateData(NullRecords nullRecords, Table source, Table target, Version from, Version to,
-			Set<String> migratedColumns, Set<String> columnsToMigrate) throws SQLException, InterruptedException {
+			Set<String> migratedColumns, Set<String> columnsToMigrate, TableProgress progress)
+			throws SQLException, InterruptedException {
 
-		Map<String, Object> highestId = queryHighestId(source);
+		IdentityCursor cursor = new IdentityCursor(source.getPrimaryKeyColumns());
+		Object[] highestId = queryHighestId(source, cursor);
 		if (highestId == null) {
 			log.info("Table: {} is empty -> nothing to migrate...", source.getName());
+			progress.finish();
 			return;
 		}
 		log.info("Migrating data in table: {} to target: {}", source.getName(), target.getName());
 
-		MigratorFunction initialMigrator = SelectiveMigratorFunction.createMigrator(nullRecords, refLog,
-				source, target, from, to, BATCH_SIZE, Stage.INITIAL, migratedColumns, columnsToMigrate);
-		MigratorFunction successiveMigrator = SelectiveMigratorFunction.createMigrator(nullRecords, refLog,
-				source, target, from, to, BATCH_SIZE, Stage.CONSECUTIVE, migratedColumns, columnsToMigrate);
+		Strategy strategy = determineStrategy();
+		MigratorFunction initialMigrator;
+		MigratorFunction successiveMigrator;
+		Map<String, String> bulkCopyValues = null;
+
+		// The RefLog may be modified by other tables which are migrated concurrently.
+		synchronized (refLog) {
+			initialMigrator = SelectiveMigratorFunction.createMigrator(nullRecords, refLog, source, target, from, to,
+					Stage.INITIAL, strategy, migratedColumns, columnsToMigrate);
+			successiveMigrator = SelectiveMigratorFunction.createMigrator(nullRecords, refLog, source, target, from,
+					to, Stage.CONSECUTIVE, strategy, migratedColumns, columnsToMigrate);
+
+			if (settings.isBulkCopy() && migratedColumns.isEmpty()) {
+				bulkCopyValues = SelectiveMigratorFunction.getInsertValues(nullRecords, refLog, source, target,
+						columnsToMigrate, "");
+			}
+		}
 
 		if (initialMigrator == null) {
+			progress.finish();
 			return;
 		}
 
+		TableCopy copy = new TableCopy(source, target, cursor, initialMigrator, successiveMigrator, bulkCopyValues,
+				progress);
+
 		try (Connection connection = backend.connect()) {
 			execute(connection, initialMigrator.getCreateStatement());
 			execute(connection, successiveMigrator.getCreateStatement());
 
 			long start = System.currentTimeMillis();
-			Map<String, Object> lastProcessedId = Maps.newHashMap();
-
-			while (true) {
-				long innerStart = System.currentTimeMillis();
-
-				QueryBuilder migrator = new QueryBuilder();
-				if (lastProcessedId.isEmpty()) {
-					migrator.append("SELECT * FROM " + initialMigrator.getName() + "();");
-				}
-				else {
-					List<String> values = successiveMigrator.getParameters().stream()
-							.map(parameterName -> asExpression(lastProcessedId.get(stripEscaping(parameterName))))
-							.collect(Collectors.toList());
-
-					migrator.append("SELECT * FROM " + successiveMigrator.getName() + "(")
-							.append(Joiner.on(", ").join(values) + ");");
-				}
 
-				try (Statement statement = connection.createStatement()) {
-					ResultSet resultSet = statement.executeQuery(migrator.toString());
+			List<KeyRange> ranges = splitIdentitySpace(connection, source, cursor, highestId);
 
-					if (resultSet.next()) {
-						lastProcessedId.putAll(readIdentity(source, resultSet));
-						if (greaterThanOrEqualsTo(lastProcessedId, highestId)) {
-							break;
-						}
-					}
-					else {
-						// No records returned. We're done migrating data...
-						break;
-					}
-				}
+			progress.start();
 
-				long innerEnd = System.currentTimeMillis();
-				log.info("Migration data source: {} target: {}, now at identity: {}, took: {} ms", source.getName(),
-						target.getName(), lastProcessedId, innerEnd - innerStart);
-
-				Thread.sleep(WAIT_TIME);
+			if (ranges.size() == 1) {
+				copyRange(connection, copy, ranges.get(0));
+			}
+			else {
+				copyRangesInParallel(copy, ranges);
 			}
 
 			long end = System.currentTimeMillis();
 			log.info("Migrating records source: {} target: {} took: {} ms", source.getName(), target.getName(), end - start);
 
+			progress.finish();
 			execute(connection, initialMigrator.getDropStatement());
 			execute(connection, successiveMigrator.getDropStatement());
 		}
 	}
 
-	private String stripEscaping(String parameterName) {
-		if (parameterName.startsWith("\"") && parameterName.endsWith("\"")) {
-			return parameterName.substring(1, parameterName.length() - 1);
-		}
-		return parameterName;
-	}
-
-	private Map<String, Object> queryHighestId(Table from) throws SQLException {
-		List<String> identityColumns = from.getPrimaryKeyColumns().stream()
-				.map(Column::getName)
-				.collect(Collectors.toList());
-
-		try (Connection connection = backend.connect()) {
-			try (Statement statement = connection.createStatement()) {
-				String query = new QueryBuilder()
-						.append("SELECT " + Joiner.on(", ").join(identityColumns))
-						.append("FROM " + from.getName())
-						.append("ORDER BY " + Joiner.on(" DESC, ").join(identityColumns) + " DESC")
-						.append("LIMIT 1")
-						.toString();
+	private void copyRangesInParallel(TableCopy copy, List<KeyRange> ranges) throws SQLException, InterruptedException {
+		Table source = copy.getSource();
+		int workers = (int) Math.max(1, Math.min(ranges.size(), settings.getCopyWorkers()));
+		log.info("Copying {} key ranges of table: {} using {} workers", ranges.size(), source.getName(), workers);
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder()
+				.setNameFormat("quantumdb-copy-" + source.getName() + "-%d")
+				.build());
+
+		try {
+			List<Future<?>> futures = Lists.newArrayList();
+			for (KeyRange range : ranges) {
+				futures.add(executor.submit(() -> {
+					try (Connection connection = backend.connect()) {
+						copyRange(connection, copy, range);
+					}
+					return null;
+				}));
+			}
 
-				ResultSet resultSet = statement.executeQuery(query);
-				if (resultSet.next()) {
-					Map<String, Object> id = Maps.newHashMap();
-					for (String identityColumn : identityColumns) {
-						Object value = resultSet.getObject(identityColumn);
-						id.put(identityColumn, value);
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof SQLException) {
+						throw (SQLException) cause;
 					}
-					return id;
+					else if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					}
+					throw new SQLException("Could not copy data from table: " + source.getName(), cause);
 				}
-				return null;
 			}
 		}
+		finally {
+			executor.shutdownNow();
+		}
 	}
 
-	private boolean greaterThanOrEqualsTo(Map<String, Object> cursor, Map<String, Object> limit) {
-		for (String key : cursor.keySet()) {
-			Object left = cursor.get(key);
-			Object right = limit.get(key);
+	/**
+	 * Copies all records in the specified key range. Since the migrator functions are only bounded by the batch
+	 * size, the last batch may also copy some records of the next range. This is harmless, since records which were
+	 * already copied are skipped, and the bulk copy engine falls back to the migrator functions when it runs into them.
+	 * If the identities cannot be compared in the same order as PostgreSQL sorts them, the range is only finished
+	 * once the copy engine runs out of records.
+	 */
+	private void copyRange(Connection connection, TableCopy copy, KeyRange range)
+			throws SQLException, InterruptedException {
+
+		Table source = copy.getSource();
+		Table target = copy.getTarget();
+
+		IdentityCursor cursor = copy.getCursor();
+		TableProgress progress = copy.getProgress();
+		Object[] lastProcessedId = range.getLower();
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+
+		try (CopyEngine engine = createEngine(copy, range)) {
+			while (true) {
+				long innerStart = System.currentTimeMillis();
 
-			if (left == null || right == null) {
-				throw new IllegalStateException("NULL values in identity columns are currently not supported.");
-			}
+				CopyEngine.Batch batch = engine.copyBatch(connection, lastProcessedId, controller.getBatchSize());
+				if (batch == null) {
+					break;
+				}
 
-			if (!(left instanceof Comparable)) {
-				left = left.toString();
-			}
+				lastProcessedId = batch.getLastIdentity();
+				progress.advance(batch.getRecords());
+				if (cursor.isOrderedAsDatabase() && cursor.compare(lastProcessedId, range.getUpper()) >= 0) {
+					break;
+				}
 
-			if (!(right instanceof Comparable)) {
-				right = right.toString();
+				long innerEnd = System.currentTimeMillis();
+				log.info("Migration data source: {} target: {}, now at identity: {}, batch size: {}, took: {} ms, "
+						+ "progress: {}%, {} rows/s, remaining: {} s", source.getName(), target.getName(),
+						cursor.toString(lastProcessedId), controller.getBatchSize(), innerEnd - innerStart,
+						Math.round(progress.getPercentage()), Math.round(progress.getRowsPerSecond()),
+						progress.getEstimatedRemainingMillis() / 1000);
+
+				controller.update(innerEnd - innerStart, DatabaseLoad.sample(connection));
+				if (controller.getPauseMillis() > 0) {
+					Thread.sleep(controller.getPauseMillis());
+				}
 			}
+		}
+	}
 
-			if (left instanceof UUID) {
-				left = left.toString().toLowerCase();
-			}
+	/**
+	 * Splits the identity space of the specified table into disjoint key ranges which can be copied independently.
+	 * The split points are picked from a random sample of the table's identities, so that every range contains
+	 * roughly the same amount of records. If parallel copying is disabled, the table is too small to benefit from
+	 * it, or its identities cannot be compared in the same order as PostgreSQL sorts them (in which case the split
+	 * points could leave gaps between, or overlap with, the ranges), a single range spanning the entire table is
+	 * returned.
+	 */
+	private List<KeyRange> splitIdentitySpace(Connection connection, Table source, IdentityCursor cursor,
+			Object[] highestId) throws SQLException {
+
+		KeyRange everything = new KeyRange(null, highestId);
+		if (settings.getCopyWorkers() <= 1 || !cursor.isOrderedAsDatabase()) {
+			return Lists.newArrayList(everything);
+		}
 
-			if (right instanceof UUID) {
-				right = right.toString().toLowerCase();
-			}
+		long rangeCount = settings.getCopyWorkers() * RANGES_PER_WORKER;
+		long estimatedRows = estimateRowCount(connection, source);
+		if (estimatedRows < rangeCount * settings.getInitialBatchSize()) {
+			return Lists.newArrayList(everything);
+		}
 
-			if (left instanceof Long) {
-				left = new BigDecimal((Long) left);
-			}
+		double percentage = Math.min(100, 100.0 * (rangeCount * SAMPLES_PER_RANGE) / estimatedRows);
+		String query = new QueryBuilder()
+				.append("SELECT " + cursor.getColumnList())
+				.append("FROM " + source.getName() + " TABLESAMPLE SYSTEM (" + percentage + ")")
+				.append("ORDER BY " + cursor.getColumnList())
+				.toString();
 
-			if (right instanceof Long) {
-				right = new BigDecimal((Long) right);
+		List<Object[]> samples = Lists.newArrayList();
+		try (Statement statement = connection.createStatement()) {
+			ResultSet resultSet = statement.executeQuery(query);
+			while (resultSet.next()) {
+				samples.add(cursor.read(resultSet, 1));
 			}
+		}
 
-			Comparable leftComparable = (Comparable) left;
-			Comparable rightComparable = (Comparable) right;
-
-			int compareTo = leftComparable.compareTo(rightComparable);
-			if (compareTo < 0) {
-				return false;
+		List<KeyRange> ranges = Lists.newArrayList();
+		Object[] lower = null;
+		for (int i = 1; i < rangeCount && !samples.isEmpty(); i++) {
+			Object[] splitPoint = samples.get((int) (i * samples.size() / rangeCount));
+			if ((lower != null && cursor.compare(splitPoint, lower) <= 0) || cursor.compare(splitPoint, highestId) >= 0) {
+				continue;
 			}
+			ranges.add(new KeyRange(lower, splitPoint));
+			lower = splitPoint;
 		}
-		return true;
+		ranges.add(new KeyRange(lower, highestId));
+		return ranges;
 	}
 
-	private Map<String, Object> readIdentity(Table from, ResultSet resultSet) throws SQLException {
-		String result = resultSet.getString(1);
-		result = result.substring(1, result.length() - 1);
-
-		List<String> parts = Lists.newArrayList();
-		StringBuilder currentPart = new StringBuilder();
-
-		boolean quoted = false;
-		char prev = ' ';
-		for (int i = 0; i < result.length(); i++) {
-			char c = result.charAt(i);
-			if (c == ',' && !quoted) {
-				parts.add(currentPart.toString());
-				currentPart = new StringBuilder();
+	/**
+	 * Estimates the amount of records in the specified table from the statistics of the table, without scanning it.
+	 * Returns zero if the table has not been analyzed yet.
+	 */
+	static long estimateRowCount(Connection connection, Table table) throws SQLException {
+		String query = "SELECT reltuples FROM pg_class WHERE oid = ?::regclass;";
+		try (PreparedStatement statement = connection.prepareStatement(query)) {
+			statement.setString(1, table.getName());
+			ResultSet resultSet = statement.executeQuery();
+			if (resultSet.next()) {
+				return Math.max(0, (long) resultSet.getDouble("reltuples"));
 			}
-			else if (c == '"' && prev != '\\') {
-				quoted = !quoted;
-			}
-			else {
-				currentPart.append(c);
-			}
-			prev = c;
+			return 0;
+		}
+	}
+
+	private CopyEngine createEngine(TableCopy copy, KeyRange range) {
+		CopyEngine engine = new FunctionCopyEngine(copy);
+		if (copy.getBulkCopyValues() != null) {
+			engine = new BulkCopyEngine(backend, copy.getSource(), copy.getTarget(), copy.getCursor(),
+					copy.getBulkCopyValues(), range.getUpper(), engine);
 		}
+		return engine;
+	}
 
-		if (currentPart.length() > 0) {
-			parts.add(currentPart.toString());
+	private Strategy determineStrategy() throws SQLException {
+		Strategy strategy = settings.getCopyStrategy();
+		if (strategy != Strategy.SET_BASED) {
+			return strategy;
 		}
 
-		Map<String, Object> identity = Maps.newHashMap();
-		List<Column> identityColumns = from.getPrimaryKeyColumns();
-		for (int i = 0; i < identityColumns.size(); i++) {
-			Column column = identityColumns.get(i);
-			String columnName = column.getName();
-			Object value = parseValue(column.getType().getType(), parts.get(i));
-			identity.put(columnName, value);
+		try (Connection connection = backend.connect()) {
+			DatabaseMetaData metaData = connection.getMetaData();
+			int major = metaData.getDatabaseMajorVersion();
+			int minor = metaData.getDatabaseMinorVersion();
+			if (major > 9 || (major == 9 && minor >= 5)) {
+				return strategy;
+			}
 		}
-		return identity;
+
+		log.warn("Set-based copying requires PostgreSQL 9.5 or up, falling back to row-by-row copying.");
+		return Strategy.ROW_BY_ROW;
 	}
 
-	private Object parseValue(Type type, String value) {
-		if (Strings.isNullOrEmpty(value)) {
-			return null;
-		}
+	private Object[] queryHighestId(Table from, IdentityCursor cursor) throws SQLException {
+		String columns = cursor.getColumns().stream()
+				.map(column -> "\"" + column.getName() + "\" DESC")
+				.collect(Collectors.joining(", "));
+
+		try (Connection connection = backend.connect()) {
+			try (Statement statement = connection.createStatement()) {
+				String query = new QueryBuilder()
+						.append("SELECT " + cursor.getColumnList())
+						.append("FROM " + from.getName())
+						.append("ORDER BY " + columns)
+						.append("LIMIT 1")
+						.toString();
 
-		switch (type) {
-			case SMALLINT:
-			case INTEGER:
-				return Integer.parseInt(value);
-			case NUMERIC:
-				return Double.parseDouble(value);
-			case BIGINT:
-				return Long.parseLong(value);
-			case NUMERIC:
-				return Double.parseDouble(value);
-			case BOOLEAN:
-				return Boolean.parseBoolean(value);
-			case TEXT:
-			case CHAR:
-			case VARCHAR:
-			case OID:
-				return value;
-			case DATE:
-				return Date.parse(value);
-			case FLOAT:
-				return Float.parseFloat(value);
-			case TIMESTAMP:
-				return Timestamp.parse(value);
-			case UUID:
-			default:
-				return UUID.fromString(value);
+				ResultSet resultSet = statement.executeQuery(query);
+				if (resultSet.next()) {
+					return cursor.read(resultSet, 1);
+				}
+				return null;
+			}
 		}
 	}
 
@@ -272,11 +417,4 @@ class TableDataMigrator {
 		}
 	}
 
-	private String asExpression(Object value) {
-		if (value instanceof Number) {
-			return value.toString();
-		}
-		return "'" + value + "'";
-	}
-
 }
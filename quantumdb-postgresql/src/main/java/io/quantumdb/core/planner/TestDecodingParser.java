@@ -0,0 +1,189 @@
+package io.quantumdb.core.planner;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import lombok.Data;
+
+/**
+ * Parses the textual output of PostgreSQL's 'test_decoding' logical decoding output plugin. Changes are described
+ * as, for example: <pre>
+ * table public.users: INSERT: id[bigint]:1 name[text]:'John'
+ * table public.users: UPDATE: old-key: id[bigint]:1 new-tuple: id[bigint]:2 name[text]:'John'
+ * table public.users: DELETE: id[bigint]:2
+ * </pre>
+ * Values are kept in their textual representation, which can be cast back to the type of their column.
+ */
+class TestDecodingParser {
+
+	enum Operation {
+		INSERT, UPDATE, DELETE
+	}
+
+	@Data
+	static class Change {
+		private final String tableName;
+		private final Operation operation;
+
+		/**
+		 * The values of the key of the record before it was changed (of deleted records, and of updated records whose
+		 * key was changed), or an empty map.
+		 */
+		private final Map<String, String> oldValues;
+
+		/**
+		 * The values of the record after it was changed (of inserted and updated records), or an empty map.
+		 */
+		private final Map<String, String> newValues;
+	}
+
+	private static final String TABLE_PREFIX = "table ";
+	private static final String OLD_KEY = "old-key:";
+	private static final String NEW_TUPLE = "new-tuple:";
+	private static final String NO_TUPLE_DATA = "(no-tuple-data)";
+
+	/**
+	 * @return The change described by the specified line, or NULL if the line doesn't describe an inserted, updated,
+	 * or deleted record (for instance BEGIN, COMMIT, TRUNCATE, or messages).
+	 */
+	static Change parse(String line) {
+		if (!line.startsWith(TABLE_PREFIX)) {
+			return null;
+		}
+
+		int[] position = { TABLE_PREFIX.length() };
+		String qualifiedName = readUntil(line, position, ": ");
+		String operationName = readUntil(line, position, ":");
+
+		Operation operation;
+		try {
+			operation = Operation.valueOf(operationName);
+		}
+		catch (IllegalArgumentException e) {
+			return null;
+		}
+
+		Map<String, String> oldValues = Maps.newLinkedHashMap();
+		Map<String, String> newValues = Maps.newLinkedHashMap();
+		Map<String, String> values = operation == Operation.DELETE ? oldValues : newValues;
+
+		while (true) {
+			skipWhitespace(line, position);
+			if (position[0] >= line.length()) {
+				break;
+			}
+
+			if (line.startsWith(OLD_KEY, position[0])) {
+				position[0] += OLD_KEY.length();
+				values = oldValues;
+			}
+			else if (line.startsWith(NEW_TUPLE, position[0])) {
+				position[0] += NEW_TUPLE.length();
+				values = newValues;
+			}
+			else if (line.startsWith(NO_TUPLE_DATA, position[0])) {
+				position[0] += NO_TUPLE_DATA.length();
+			}
+			else {
+				String columnName = readIdentifier(line, position, '[');
+				position[0]++;
+				readUntil(line, position, "]:");
+				String value = readValue(line, position);
+				values.put(columnName, value);
+			}
+		}
+
+		return new Change(unqualify(qualifiedName), operation, oldValues, newValues);
+	}
+
+	/**
+	 * @return The name of the table without its schema, and without quotes.
+	 */
+	private static String unqualify(String qualifiedName) {
+		int[] position = { 0 };
+		String name = readIdentifier(qualifiedName, position, '.');
+		while (position[0] < qualifiedName.length()) {
+			position[0]++;
+			name = readIdentifier(qualifiedName, position, '.');
+		}
+		return name;
+	}
+
+	/**
+	 * Reads a possibly quoted identifier, up to the specified terminator.
+	 */
+	private static String readIdentifier(String line, int[] position, char terminator) {
+		StringBuilder builder = new StringBuilder();
+		boolean quoted = false;
+		while (position[0] < line.length()) {
+			char current = line.charAt(position[0]);
+			if (current == '"') {
+				if (quoted && position[0] + 1 < line.length() && line.charAt(position[0] + 1) == '"') {
+					builder.append('"');
+					position[0]++;
+				}
+				else {
+					quoted = !quoted;
+				}
+			}
+			else if (current == terminator && !quoted) {
+				break;
+			}
+			else {
+				builder.append(current);
+			}
+			position[0]++;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Reads a value which is either quoted (in which case quotes are escaped by doubling them) or ends at the next
+	 * space. Unquoted values include 'null' and 'unchanged-toast-datum', which are returned as NULL.
+	 */
+	private static String readValue(String line, int[] position) {
+		if (position[0] < line.length() && line.charAt(position[0]) == '\'') {
+			StringBuilder builder = new StringBuilder();
+			position[0]++;
+			while (position[0] < line.length()) {
+				char current = line.charAt(position[0]++);
+				if (current == '\'') {
+					if (position[0] < line.length() && line.charAt(position[0]) == '\'') {
+						builder.append('\'');
+						position[0]++;
+					}
+					else {
+						break;
+					}
+				}
+				else {
+					builder.append(current);
+				}
+			}
+			return builder.toString();
+		}
+
+		String value = readUntil(line, position, " ");
+		if (value.equals("null") || value.equals("unchanged-toast-datum")) {
+			return null;
+		}
+		return value;
+	}
+
+	private static String readUntil(String line, int[] position, String terminator) {
+		int end = line.indexOf(terminator, position[0]);
+		if (end < 0) {
+			end = line.length();
+		}
+		String result = line.substring(position[0], end);
+		position[0] = Math.min(line.length(), end + terminator.length());
+		return result;
+	}
+
+	private static void skipWhitespace(String line, int[] position) {
+		while (position[0] < line.length() && line.charAt(position[0]) == ' ') {
+			position[0]++;
+		}
+	}
+
+}
@@ -105,6 +105,12 @@ public class Backend {
 		private final Date created;
 	}
 
+	/**
+	 * The channel on which a notification is sent for every version whose table mapping in ref_versions changed.
+	 * The payload of each notification is the id of that version. Keep in sync with the QuantumDB driver.
+	 */
+	public static final String REF_VERSIONS_CHANNEL = "quantumdb_ref_versions";
+
 	private final Gson gson;
 
 	public Backend() {
@@ -477,6 +483,7 @@ public class Backend {
 			versionIds.forEach(versionId -> mapping.put(refId, versionId, viewName));
 		});
 
+		Set<String> changedVersionIds = Sets.newLinkedHashSet();
 		try (Statement statement = connection.createStatement()) {
 			String query = "SELECT * FROM quantumdb.ref_versions ORDER BY ref_id ASC;";
 			String deleteQuery = "DELETE FROM quantumdb.ref_versions WHERE ref_id = ? AND version_id = ?;";
@@ -494,6 +501,7 @@ public class Backend {
 							delete.setString(1, refId);
 							delete.setString(2, versionId);
 							delete.execute();
+							changedVersionIds.add(versionId);
 							log.debug("Deleted entry for ref_versions id: {} / {}", refId, versionId);
 						}
 					}
@@ -506,6 +514,7 @@ public class Backend {
 						delete.setString(1, refId);
 						delete.setString(2, versionId);
 						delete.execute();
+						changedVersionIds.add(versionId);
 						log.debug("Deleted entry for ref_versions id: {} / {}", refId, versionId);
 					}
 				}
@@ -521,6 +530,7 @@ public class Backend {
 					insert.setString(2, versionId);
 					insert.setString(3, entry.getValue());
 					insert.execute();
+					changedVersionIds.add(versionId);
 
 					log.debug("Inserted new entry for ref_versions id: {} / {}", refId, versionId);
 				}
@@ -528,6 +538,28 @@ public class Backend {
 
 			resultSet.close();
 		}
+
+		notifyRefVersionsChanged(connection, changedVersionIds);
+	}
+
+	/**
+	 * Notifies listening QuantumDB drivers that the table mapping of the specified versions has changed, so they
+	 * can reload it. Notifications are only delivered once the surrounding transaction commits.
+	 */
+	private void notifyRefVersionsChanged(Connection connection, Set<String> versionIds) throws SQLException {
+		if (versionIds.isEmpty()) {
+			return;
+		}
+
+		String query = "SELECT pg_notify(?, ?);";
+		try (PreparedStatement notify = connection.prepareStatement(query)) {
+			for (String versionId : versionIds) {
+				notify.setString(1, REF_VERSIONS_CHANNEL);
+				notify.setString(2, versionId);
+				notify.execute();
+				log.debug("Notified listeners of changed ref_versions for version: {}", versionId);
+			}
+		}
 	}
 
 	private Collection<RawTableColumn> persistTableColumns(Connection connection, RefLog refLog) throws SQLException {
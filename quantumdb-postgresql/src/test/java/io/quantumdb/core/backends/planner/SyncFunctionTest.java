@@ -18,6 +18,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.quantumdb.core.planner.NullRecords;
 import io.quantumdb.core.planner.SyncFunction;
+import io.quantumdb.core.planner.SyncFunctionFixture;
 import io.quantumdb.core.schema.definitions.Catalog;
 import io.quantumdb.core.schema.definitions.Column;
 import io.quantumdb.core.schema.definitions.Identity;
@@ -244,6 +245,59 @@ public class SyncFunctionTest {
 		assertThat(syncFunction.getUpdateIdentities(), is(ImmutableMap.of("id", "OLD.id")));
 	}
 
+	@Test
+	public void testRowLevelUpsertSync() {
+		SyncFunction syncFunction = new SyncFunctionFixture().createSyncFunction(SyncFunction.Strategy.PER_ROW);
+
+		String function = syncFunction.createFunctionStatement().toString();
+		assertThat(function.contains("IF TG_OP = 'UPDATE' AND (OLD.\"id\") IS DISTINCT FROM (NEW.\"id\") THEN"), is(true));
+		assertThat(function.contains("ON CONFLICT (\"id\") DO UPDATE SET \"full_name\" = EXCLUDED.\"full_name\" "
+				+ "WHERE (users2.\"full_name\") IS DISTINCT FROM (EXCLUDED.\"full_name\");"), is(true));
+		assertThat(function.contains("EXCEPTION"), is(false));
+
+		String triggers = syncFunction.createTriggerStatement().toString();
+		assertThat(triggers.contains("CREATE TRIGGER trig_users AFTER INSERT OR DELETE ON users FOR EACH ROW"), is(true));
+		assertThat(triggers.contains("CREATE TRIGGER trig_users_update AFTER UPDATE OF"), is(true));
+		assertThat(triggers.contains("IS DISTINCT FROM (NEW."), is(true));
+	}
+
+	@Test
+	public void testStatementLevelSync() {
+		SyncFunction syncFunction = new SyncFunctionFixture().createSyncFunction(SyncFunction.Strategy.PER_STATEMENT);
+
+		String function = syncFunction.createFunctionStatement().toString();
+		assertThat(function.contains("n.\"name\""), is(true));
+		assertThat(function.contains("FROM new_rows n"), is(true));
+		assertThat(function.contains("ON CONFLICT (\"id\") DO UPDATE SET \"full_name\" = EXCLUDED.\"full_name\" "
+				+ "WHERE (users2.\"full_name\") IS DISTINCT FROM (EXCLUDED.\"full_name\");"), is(true));
+		assertThat(function.contains("EXCEPTION"), is(false));
+
+		String triggers = syncFunction.createTriggerStatement().toString();
+		assertThat(triggers.contains("CREATE TRIGGER trig_users_insert AFTER INSERT ON users "
+				+ "REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT"), is(true));
+		assertThat(triggers.contains("CREATE TRIGGER trig_users_update AFTER UPDATE ON users "
+				+ "REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT"), is(true));
+		assertThat(triggers.contains("CREATE TRIGGER trig_users_delete AFTER DELETE ON users "
+				+ "REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT"), is(true));
+	}
+
+	@Test
+	public void testQueuedSync() {
+		SyncFunction syncFunction = new SyncFunctionFixture().createSyncFunction(SyncFunction.Strategy.QUEUED);
+
+		String function = syncFunction.createFunctionStatement().toString();
+		assertThat(function.contains("CREATE UNLOGGED TABLE IF NOT EXISTS sync_users_queue"), is(true));
+		assertThat(function.contains("INSERT INTO sync_users_queue (op, \"id\") VALUES ('D', OLD.\"id\");"), is(true));
+		assertThat(function.contains("INSERT INTO users2"), is(false));
+
+		String apply = syncFunction.createApplyStatement(1000).toString();
+		assertThat(apply.contains("DELETE FROM sync_users_queue WHERE seq IN "
+				+ "(SELECT seq FROM sync_users_queue ORDER BY seq LIMIT 1000)"), is(true));
+		assertThat(apply.contains("NOT EXISTS (SELECT 1 FROM users s WHERE s.\"id\" = c.\"id\")"), is(true));
+		assertThat(apply.contains("FROM users s JOIN changed c ON s.\"id\" = c.\"id\""), is(true));
+		assertThat(apply.endsWith("SELECT COUNT(*) FROM batch;"), is(true));
+	}
+
 	private Set<String> list(String... inputs) {
 		return Sets.newLinkedHashSet(Lists.newArrayList(inputs));
 	}
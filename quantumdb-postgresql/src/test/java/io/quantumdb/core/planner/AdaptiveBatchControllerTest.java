@@ -0,0 +1,102 @@
+package io.quantumdb.core.planner;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveBatchControllerTest {
+
+	private MigrationSettings settings;
+
+	@Before
+	public void setUp() {
+		this.settings = new MigrationSettings();
+		settings.setTargetBatchMillis(1_000);
+		settings.setInitialBatchSize(1_000);
+		settings.setMinBatchSize(100);
+		settings.setMaxBatchSize(10_000);
+		settings.setInitialPauseMillis(50);
+		settings.setMaxPauseMillis(1_000);
+		settings.setMaxReplicaLagMillis(5_000);
+		settings.setMaxLockWaits(10);
+		settings.setMaxActiveBackends(0);
+	}
+
+	@Test
+	public void testThatBatchSizeGrowsWhenBatchesAreFast() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(100, DatabaseLoad.IDLE);
+
+		assertEquals(2_000, controller.getBatchSize());
+		assertEquals(25, controller.getPauseMillis());
+	}
+
+	@Test
+	public void testThatBatchSizeShrinksWhenBatchesAreSlow() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(1_600, DatabaseLoad.IDLE);
+
+		assertEquals(625, controller.getBatchSize());
+	}
+
+	@Test
+	public void testThatBatchSizeIsStableWithinTolerance() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(1_100, DatabaseLoad.IDLE);
+
+		assertEquals(1_000, controller.getBatchSize());
+	}
+
+	@Test
+	public void testThatBatchSizeIsCappedByMaximum() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		for (int i = 0; i < 10; i++) {
+			controller.update(1, DatabaseLoad.IDLE);
+		}
+
+		assertEquals(10_000, controller.getBatchSize());
+		assertEquals(0, controller.getPauseMillis());
+	}
+
+	@Test
+	public void testThatControllerBacksOffOnReplicaLag() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(100, new DatabaseLoad(0, 0, 10_000));
+
+		assertEquals(500, controller.getBatchSize());
+		assertEquals(100, controller.getPauseMillis());
+
+		controller.update(100, new DatabaseLoad(0, 0, 10_000));
+
+		assertEquals(250, controller.getBatchSize());
+		assertEquals(200, controller.getPauseMillis());
+	}
+
+	@Test
+	public void testThatControllerBacksOffOnLockWaits() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(100, new DatabaseLoad(0, 11, 0));
+
+		assertEquals(500, controller.getBatchSize());
+	}
+
+	@Test
+	public void testThatDisabledThresholdIsIgnored() {
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(1_000, new DatabaseLoad(1_000, 0, 0));
+
+		assertEquals(1_000, controller.getBatchSize());
+	}
+
+	@Test
+	public void testThatPauseGrowsWhenSmallestBatchIsTooSlow() {
+		settings.setInitialBatchSize(100);
+		AdaptiveBatchController controller = new AdaptiveBatchController(settings);
+		controller.update(5_000, DatabaseLoad.IDLE);
+
+		assertEquals(100, controller.getBatchSize());
+		assertEquals(100, controller.getPauseMillis());
+	}
+
+}
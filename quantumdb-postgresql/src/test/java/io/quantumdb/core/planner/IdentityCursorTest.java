@@ -0,0 +1,84 @@
+package io.quantumdb.core.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import io.quantumdb.core.schema.definitions.Column;
+import io.quantumdb.core.schema.definitions.PostgresTypes;
+import org.junit.Test;
+
+public class IdentityCursorTest {
+
+	@Test
+	public void testThatIntegralValuesAreComparedNumerically() {
+		IdentityCursor cursor = new IdentityCursor(Lists.newArrayList(new Column("id", PostgresTypes.bigint())));
+
+		assertTrue(cursor.compare(new Object[] { 9L }, new Object[] { 10L }) < 0);
+		assertTrue(cursor.compare(new Object[] { 10 }, new Object[] { 10L }) == 0);
+		assertTrue(cursor.compare(new Object[] { 11L }, new Object[] { 10 }) > 0);
+	}
+
+	@Test
+	public void testThatCompositeIdentitiesAreComparedLexicographically() {
+		IdentityCursor cursor = new IdentityCursor(Lists.newArrayList(
+				new Column("tenant_id", PostgresTypes.integer()),
+				new Column("name", PostgresTypes.text())));
+
+		assertTrue(cursor.compare(new Object[] { 1L, "z" }, new Object[] { 2L, "a" }) < 0);
+		assertTrue(cursor.compare(new Object[] { 2L, "b" }, new Object[] { 2L, "a" }) > 0);
+		assertTrue(cursor.compare(new Object[] { 2L, "a" }, new Object[] { 2L, "a" }) == 0);
+	}
+
+	@Test
+	public void testThatUuidsAreComparedAsUnsignedBytes() {
+		IdentityCursor cursor = new IdentityCursor(Lists.newArrayList(new Column("id", PostgresTypes.uuid())));
+
+		UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+		UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+
+		assertTrue(cursor.compare(new Object[] { low }, new Object[] { high }) < 0);
+	}
+
+	@Test
+	public void testThatTextLiteralsAreEscaped() {
+		IdentityCursor cursor = new IdentityCursor(Lists.newArrayList(new Column("name", PostgresTypes.text())));
+
+		assertEquals("'O''Brien'::text", cursor.toLiteral(0, "O'Brien"));
+	}
+
+	@Test
+	public void testThatFloatingPointLiteralsAreQuoted() {
+		IdentityCursor cursor = new IdentityCursor(Lists.newArrayList(new Column("id", PostgresTypes.doubles())));
+
+		assertEquals("'1.5'::real", cursor.toLiteral(0, 1.5d));
+		assertEquals("'NaN'::real", cursor.toLiteral(0, Double.NaN));
+		assertEquals("'-Infinity'::real", cursor.toLiteral(0, Double.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public void testThatPlaceholdersAreCastToColumnTypes() {
+		IdentityCursor cursor = new IdentityCursor(Lists.newArrayList(
+				new Column("tenant_id", PostgresTypes.integer()),
+				new Column("id", PostgresTypes.uuid())));
+
+		assertEquals("?::integer, ?::uuid", cursor.getPlaceholders());
+		assertEquals("\"tenant_id\", \"id\"", cursor.getColumnList());
+	}
+
+	@Test
+	public void testThatOnlyIdentitiesWithoutTextAreOrderedAsDatabase() {
+		assertTrue(new IdentityCursor(Lists.newArrayList(
+				new Column("tenant_id", PostgresTypes.integer()),
+				new Column("id", PostgresTypes.uuid()))).isOrderedAsDatabase());
+
+		// PostgreSQL sorts text according to the collation of the column, which may differ from Java's order.
+		assertFalse(new IdentityCursor(Lists.newArrayList(
+				new Column("tenant_id", PostgresTypes.integer()),
+				new Column("name", PostgresTypes.varchar(255)))).isOrderedAsDatabase());
+	}
+
+}
@@ -0,0 +1,85 @@
+package io.quantumdb.core.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import io.quantumdb.core.backends.planner.Step;
+import io.quantumdb.core.schema.definitions.Table;
+import org.junit.Test;
+
+public class StepSchedulerTest {
+
+	private final Table users = new Table("users");
+	private final Table orders = new Table("orders");
+	private final Table payments = new Table("payments");
+
+	@Test
+	public void testThatIndependentStepsAreExecutedConcurrently() throws Exception {
+		Step copyUsers = Step.copy(users, Sets.newLinkedHashSet(Lists.newArrayList("id")));
+		Step copyOrders = Step.copy(orders, Sets.newLinkedHashSet(Lists.newArrayList("id")));
+
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		new StepScheduler(Lists.newArrayList(copyUsers, copyOrders), 2, step -> {
+			try {
+				// Both steps must be running at the same time to pass this barrier.
+				barrier.await(5, TimeUnit.SECONDS);
+			}
+			catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}).run();
+
+		assertTrue(copyUsers.isExecuted());
+		assertTrue(copyOrders.isExecuted());
+	}
+
+	@Test
+	public void testThatDependenciesAreRespected() throws Exception {
+		Step copyUsers = Step.copy(users, Sets.newLinkedHashSet(Lists.newArrayList("id")));
+		Step copyOrders = Step.copy(orders, Sets.newLinkedHashSet(Lists.newArrayList("id")), copyUsers);
+
+		List<Step> executed = Lists.newCopyOnWriteArrayList();
+		new StepScheduler(Lists.newArrayList(copyOrders, copyUsers), 4, executed::add).run();
+
+		assertEquals(Lists.newArrayList(copyUsers, copyOrders), executed);
+	}
+
+	@Test
+	public void testThatNullRecordStepsAreExecutedOnTheirOwn() {
+		Step addNull = Step.addNull(Sets.newHashSet(users));
+		Step copyOrders = Step.copy(orders, Sets.newLinkedHashSet(Lists.newArrayList("id")));
+		Step copyPayments = Step.copy(payments, Sets.newLinkedHashSet(Lists.newArrayList("id")));
+		Step dropNull = Step.dropNull(Sets.newHashSet(users), copyOrders);
+
+		StepScheduler scheduler = new StepScheduler(Lists.newArrayList(addNull, copyOrders, copyPayments, dropNull),
+				4, step -> {});
+
+		assertEquals(Lists.newArrayList(addNull), scheduler.selectExecutableSteps());
+
+		addNull.markAsExecuted();
+		assertEquals(Lists.newArrayList(copyOrders, copyPayments), scheduler.selectExecutableSteps());
+
+		copyOrders.markAsExecuted();
+		assertEquals(Lists.newArrayList(copyPayments), scheduler.selectExecutableSteps());
+
+		copyPayments.markAsExecuted();
+		assertEquals(Lists.newArrayList(dropNull), scheduler.selectExecutableSteps());
+	}
+
+	@Test
+	public void testThatStepsOnTheSameTableAreNotExecutedConcurrently() {
+		Step firstPass = Step.copy(users, Sets.newLinkedHashSet(Lists.newArrayList("id")));
+		Step secondPass = Step.copy(users, Sets.newLinkedHashSet(Lists.newArrayList("name")));
+
+		StepScheduler scheduler = new StepScheduler(Lists.newArrayList(firstPass, secondPass), 4, step -> {});
+
+		assertEquals(Lists.newArrayList(firstPass), scheduler.selectExecutableSteps());
+	}
+
+}
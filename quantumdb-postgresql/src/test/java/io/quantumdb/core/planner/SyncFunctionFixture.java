@@ -0,0 +1,79 @@
+package io.quantumdb.core.planner;
+
+import static io.quantumdb.core.schema.definitions.Column.Hint.AUTO_INCREMENT;
+import static io.quantumdb.core.schema.definitions.Column.Hint.NOT_NULL;
+import static io.quantumdb.core.schema.definitions.Column.Hint.PRIMARY_KEY;
+import static io.quantumdb.core.schema.definitions.PostgresTypes.bigint;
+import static io.quantumdb.core.schema.definitions.PostgresTypes.varchar;
+import static io.quantumdb.core.schema.operations.SchemaOperations.alterColumn;
+
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import io.quantumdb.core.schema.definitions.Catalog;
+import io.quantumdb.core.schema.definitions.Column;
+import io.quantumdb.core.schema.definitions.Table;
+import io.quantumdb.core.versioning.Changelog;
+import io.quantumdb.core.versioning.RefLog;
+import io.quantumdb.core.versioning.RefLog.ColumnRef;
+import io.quantumdb.core.versioning.RefLog.TableRef;
+import lombok.Getter;
+import org.mockito.Mockito;
+
+/**
+ * A "users" table, and its ghost table "users2" in which the "name" column has been renamed to "full_name". Creates
+ * sync functions from the "users" table to the "users2" table using any strategy.
+ */
+@Getter
+public class SyncFunctionFixture {
+
+	public static final String FUNCTION_NAME = "sync_users";
+	public static final String TRIGGER_NAME = "trig_users";
+
+	private final Table source;
+	private final Table target;
+	private final Catalog catalog;
+	private final RefLog refLog;
+	private final TableRef sourceRef;
+	private final TableRef targetRef;
+
+	public SyncFunctionFixture() {
+		this.source = new Table("users")
+				.addColumn(new Column("id", bigint(), PRIMARY_KEY, AUTO_INCREMENT, NOT_NULL))
+				.addColumn(new Column("name", varchar(255), NOT_NULL));
+
+		this.target = new Table("users2")
+				.addColumn(new Column("id", bigint(), PRIMARY_KEY, AUTO_INCREMENT, NOT_NULL))
+				.addColumn(new Column("full_name", varchar(255), NOT_NULL));
+
+		this.catalog = new Catalog("public");
+		catalog.addTable(source);
+		catalog.addTable(target);
+
+		Changelog changelog = new Changelog();
+		changelog.addChangeSet("test", "Michael de Jong", alterColumn("users", "name").rename("full_name"));
+		this.refLog = new RefLog();
+
+		ColumnRef usersId = new ColumnRef("id");
+		ColumnRef usersName = new ColumnRef("name");
+		this.sourceRef = refLog.addTable(source.getName(), source.getName(), changelog.getRoot(),
+				Lists.newArrayList(usersId, usersName));
+
+		ColumnRef users2Id = new ColumnRef("id", Sets.newHashSet(usersId));
+		ColumnRef users2Name = new ColumnRef("full_name", Sets.newHashSet(usersName));
+		this.targetRef = refLog.addTable(source.getName(), target.getName(), changelog.getLastAdded(),
+				Lists.newArrayList(users2Id, users2Name));
+	}
+
+	public SyncFunction createSyncFunction(SyncFunction.Strategy strategy) {
+		NullRecords nullRecords = Mockito.mock(NullRecords.class);
+		Map<ColumnRef, ColumnRef> columnMapping = refLog.getColumnMapping(sourceRef, targetRef);
+		SyncFunction syncFunction = new SyncFunction(refLog, sourceRef, targetRef, columnMapping, catalog, nullRecords,
+				FUNCTION_NAME, TRIGGER_NAME);
+		syncFunction.setStrategy(strategy);
+		syncFunction.setColumnsToMigrate(Sets.newLinkedHashSet(Lists.newArrayList("id", "full_name")));
+		return syncFunction;
+	}
+
+}
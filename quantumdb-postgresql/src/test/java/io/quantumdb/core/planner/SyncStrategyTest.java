@@ -0,0 +1,204 @@
+package io.quantumdb.core.planner;
+
+import static io.quantumdb.core.planner.SyncFunctionFixture.TRIGGER_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import io.quantumdb.core.backends.Config;
+import io.quantumdb.core.backends.PostgresqlDatabase;
+import io.quantumdb.core.utils.QueryBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Installs sync functions of every strategy on a PostgreSQL database, and verifies that inserts, updates (of both
+ * regular and identity columns), and deletes on the source table end up in the target table.
+ */
+public class SyncStrategyTest {
+
+	@Rule
+	public final PostgresqlDatabase database = new PostgresqlDatabase();
+
+	private SyncFunctionFixture fixture;
+
+	@Before
+	public void setUp() throws SQLException {
+		fixture = new SyncFunctionFixture();
+		new TableCreator().create(database.getConnection(), fixture.getCatalog().getTables());
+	}
+
+	@Test
+	public void testRowLevelUpsertSync() throws SQLException {
+		assumeServerVersion(9, 5);
+
+		install(fixture.createSyncFunction(SyncFunction.Strategy.PER_ROW));
+		writeChanges();
+
+		assertInSync();
+	}
+
+	@Test
+	public void testStatementLevelSync() throws SQLException {
+		assumeServerVersion(10, 0);
+
+		install(fixture.createSyncFunction(SyncFunction.Strategy.PER_STATEMENT));
+		writeChanges();
+
+		assertInSync();
+	}
+
+	@Test
+	public void testQueuedSyncCutoverToStatementLevelSync() throws SQLException, InterruptedException {
+		assumeServerVersion(10, 0);
+
+		SyncFunction syncFunction = fixture.createSyncFunction(SyncFunction.Strategy.QUEUED);
+		install(syncFunction);
+
+		try (ChangeQueueApplier applier = new ChangeQueueApplier(new PostgresqlBackend(createConfig()), 2)) {
+			applier.register(syncFunction);
+			writeChanges();
+
+			applier.cutover(SyncFunction.Strategy.PER_STATEMENT);
+			assertTrue(applier.isEmpty());
+		}
+
+		assertInSync();
+		assertEquals(Lists.newArrayList(TRIGGER_NAME + "_delete", TRIGGER_NAME + "_insert", TRIGGER_NAME + "_update"),
+				queryTriggers());
+		assertFalse(tableExists(syncFunction.getQueueName()));
+
+		// The statement-level triggers now keep the target table in sync, without any queue.
+		try (Statement statement = database.getConnection().createStatement()) {
+			statement.execute("INSERT INTO users (id, name) VALUES (5, 'Eve'), (6, 'Frank');");
+			statement.execute("UPDATE users SET name = 'Robert' WHERE id = 2;");
+			statement.execute("DELETE FROM users WHERE id IN (13, 6);");
+		}
+
+		assertInSync("2: Robert", "5: Eve", "14: Dave Jr.");
+	}
+
+	@Test
+	public void testAbandonQueuedSync() throws SQLException {
+		SyncFunction syncFunction = fixture.createSyncFunction(SyncFunction.Strategy.QUEUED);
+		install(syncFunction);
+
+		try (ChangeQueueApplier applier = new ChangeQueueApplier(new PostgresqlBackend(createConfig()), 2)) {
+			applier.register(syncFunction);
+			writeChanges();
+
+			applier.abandon();
+			assertTrue(applier.isEmpty());
+		}
+
+		assertEquals(Lists.newArrayList(), queryTriggers());
+		assertFalse(tableExists(syncFunction.getQueueName()));
+
+		// Writes to the source table no longer depend on the dropped sync function.
+		try (Statement statement = database.getConnection().createStatement()) {
+			statement.execute("INSERT INTO users (id, name) VALUES (5, 'Eve');");
+			statement.execute("DELETE FROM users WHERE id = 2;");
+		}
+
+		assertEquals(Lists.newArrayList("5: Eve", "13: Carol", "14: Dave Jr."),
+				query("SELECT id, name FROM users ORDER BY id;"));
+	}
+
+	private Config createConfig() {
+		Config config = new Config();
+		config.setUrl(database.getJdbcUrl() + "/" + database.getCatalogName());
+		config.setUser(database.getJdbcUser());
+		config.setPassword(database.getJdbcPass());
+		config.setCatalog(database.getCatalogName());
+		config.setDriver(database.getJdbcDriver());
+		return config;
+	}
+
+	private void install(SyncFunction syncFunction) throws SQLException {
+		Connection connection = database.getConnection();
+		execute(connection, syncFunction.createFunctionStatement());
+		execute(connection, syncFunction.createTriggerStatement());
+	}
+
+	/**
+	 * Inserts, updates, and deletes records of the source table, using statements which affect multiple records.
+	 */
+	private void writeChanges() throws SQLException {
+		try (Statement statement = database.getConnection().createStatement()) {
+			statement.execute("INSERT INTO users (id, name) VALUES (1, 'Alice'), (2, 'Bob'), (3, 'Carol'), (4, 'Dave');");
+			statement.execute("UPDATE users SET name = name || ' Jr.' WHERE id IN (2, 4);");
+			statement.execute("UPDATE users SET id = id + 10 WHERE id IN (3, 4);");
+			statement.execute("DELETE FROM users WHERE id = 1;");
+		}
+	}
+
+	private void assertInSync() throws SQLException {
+		assertInSync("2: Bob Jr.", "13: Carol", "14: Dave Jr.");
+	}
+
+	private void assertInSync(String... records) throws SQLException {
+		List<String> expected = query("SELECT id, name FROM users ORDER BY id;");
+		assertEquals(Lists.newArrayList(records), expected);
+		assertEquals(expected, query("SELECT id, full_name FROM users2 ORDER BY id;"));
+	}
+
+	private List<String> queryTriggers() throws SQLException {
+		List<String> triggers = Lists.newArrayList();
+		try (Statement statement = database.getConnection().createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT tgname FROM pg_trigger "
+						+ "WHERE tgrelid = 'users'::regclass AND NOT tgisinternal ORDER BY tgname;")) {
+
+			while (resultSet.next()) {
+				triggers.add(resultSet.getString(1));
+			}
+		}
+		return triggers;
+	}
+
+	private boolean tableExists(String tableName) throws SQLException {
+		try (Statement statement = database.getConnection().createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM information_schema.tables "
+						+ "WHERE table_schema = 'public' AND table_name = '" + tableName + "';")) {
+
+			resultSet.next();
+			return resultSet.getLong(1) > 0;
+		}
+	}
+
+	private List<String> query(String query) throws SQLException {
+		List<String> records = Lists.newArrayList();
+		try (Statement statement = database.getConnection().createStatement();
+				ResultSet resultSet = statement.executeQuery(query)) {
+
+			while (resultSet.next()) {
+				records.add(resultSet.getLong(1) + ": " + resultSet.getString(2));
+			}
+		}
+		return records;
+	}
+
+	private void assumeServerVersion(int major, int minor) throws SQLException {
+		DatabaseMetaData metaData = database.getConnection().getMetaData();
+		int serverMajor = metaData.getDatabaseMajorVersion();
+		int serverMinor = metaData.getDatabaseMinorVersion();
+		assumeTrue("Requires PostgreSQL " + major + "." + minor + " or up",
+				serverMajor > major || (serverMajor == major && serverMinor >= minor));
+	}
+
+	private void execute(Connection connection, QueryBuilder query) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(query.toString());
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package io.quantumdb.core.planner;
+
+import static io.quantumdb.core.schema.definitions.Column.Hint.NOT_NULL;
+import static io.quantumdb.core.schema.definitions.Column.Hint.PRIMARY_KEY;
+import static io.quantumdb.core.schema.definitions.PostgresTypes.bool;
+import static io.quantumdb.core.schema.definitions.PostgresTypes.text;
+import static io.quantumdb.core.schema.operations.SchemaOperations.addColumn;
+import static io.quantumdb.core.schema.operations.SchemaOperations.createTable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import io.quantumdb.core.backends.Backend;
+import io.quantumdb.core.backends.Config;
+import io.quantumdb.core.backends.DatabaseMigrator.MigrationException;
+import io.quantumdb.core.backends.PostgresqlDatabase;
+import io.quantumdb.core.migration.Migrator;
+import io.quantumdb.core.versioning.Changelog;
+import io.quantumdb.core.versioning.State;
+import io.quantumdb.core.versioning.Version;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TableDataMigratorTest {
+
+	private static final int RECORDS = 1000;
+
+	@Rule
+	public final PostgresqlDatabase database = new PostgresqlDatabase();
+
+	private Config config;
+	private Version root;
+	private Version createTable;
+	private Version addColumn;
+
+	@Before
+	public void setUp() throws MigrationException {
+		config = new Config();
+		config.setUrl(database.getJdbcUrl() + "/" + database.getCatalogName());
+		config.setUser(database.getJdbcUser());
+		config.setPassword(database.getJdbcPass());
+		config.setCatalog(database.getCatalogName());
+		config.setDriver(database.getJdbcDriver());
+
+		// Small batches, so that every table is copied using many batches.
+		config.setProperty("migration.initialBatchSize", "10");
+		config.setProperty("migration.minBatchSize", "10");
+		config.setProperty("migration.maxBatchSize", "10");
+		config.setProperty("migration.initialPauseMillis", "0");
+
+		Backend backend = config.getBackend();
+		State state = backend.loadState();
+		Changelog changelog = state.getChangelog();
+
+		root = changelog.getRoot();
+		createTable = changelog.addChangeSet("create", "Michael de Jong",
+				createTable("users").with("name", text(), PRIMARY_KEY, NOT_NULL))
+				.getLastAdded();
+
+		addColumn = changelog.addChangeSet("add", "Michael de Jong",
+				addColumn("users", "admin", bool(), "'false'", NOT_NULL))
+				.getLastAdded();
+
+		backend.persistState(state);
+	}
+
+	@Test
+	public void testThatTextIdentitiesAreCopiedInOrderOfTheirCollation() throws SQLException, MigrationException {
+		copyTextIdentities();
+	}
+
+	@Test
+	public void testThatTextIdentitiesAreCopiedInOrderOfTheirCollationWithMultipleWorkers()
+			throws SQLException, MigrationException {
+
+		config.setProperty("migration.copyWorkers", "4");
+		copyTextIdentities();
+	}
+
+	private void copyTextIdentities() throws SQLException, MigrationException {
+		Backend backend = config.getBackend();
+		new Migrator(backend).migrate(root.getId(), createTable.getId());
+
+		String source = getRefId(backend, createTable);
+		try (Connection connection = database.createConnection();
+				Statement statement = connection.createStatement()) {
+
+			String collation = findLinguisticCollation(statement);
+			assumeTrue("No linguistic collation available", collation != null);
+
+			// Under a linguistic collation all 'a...' names sort before all 'B...' names, whereas Java (like the
+			// "C" collation) sorts them the other way around.
+			statement.execute("ALTER TABLE " + source + " ALTER COLUMN name TYPE text COLLATE \"" + collation + "\";");
+			statement.execute("INSERT INTO " + source + " (name) "
+					+ "SELECT CASE WHEN i % 2 = 0 THEN 'a' ELSE 'B' END || lpad(i::text, 4, '0') "
+					+ "FROM generate_series(1, " + RECORDS + ") AS i;");
+			statement.execute("ANALYZE " + source + ";");
+		}
+
+		new Migrator(backend).migrate(createTable.getId(), addColumn.getId());
+
+		String target = getRefId(backend, addColumn);
+		assertEquals(RECORDS, count(target));
+	}
+
+	private String getRefId(Backend backend, Version version) throws MigrationException {
+		State state = backend.loadState();
+		Version loaded = state.getChangelog().getVersion(version.getId());
+		return state.getRefLog().getTableRef(loaded, "users").getRefId();
+	}
+
+	private long count(String tableName) throws SQLException {
+		try (Connection connection = database.createConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + tableName + ";")) {
+
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+
+	private String findLinguisticCollation(Statement statement) throws SQLException {
+		String query = "SELECT collname FROM pg_collation "
+				+ "WHERE collname IN ('en_US.utf8', 'en_US.UTF-8', 'en_US', 'en-US-x-icu') "
+				+ "ORDER BY collname LIMIT 1;";
+
+		try (ResultSet resultSet = statement.executeQuery(query)) {
+			return resultSet.next() ? resultSet.getString(1) : null;
+		}
+	}
+
+}
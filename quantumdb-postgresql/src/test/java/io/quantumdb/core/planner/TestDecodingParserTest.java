@@ -0,0 +1,61 @@
+package io.quantumdb.core.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import io.quantumdb.core.planner.TestDecodingParser.Change;
+import io.quantumdb.core.planner.TestDecodingParser.Operation;
+import org.junit.Test;
+
+public class TestDecodingParserTest {
+
+	@Test
+	public void testThatInsertsAreParsed() {
+		Change change = TestDecodingParser.parse("table public.users: INSERT: id[bigint]:1 name[text]:'John'");
+
+		assertEquals("users", change.getTableName());
+		assertEquals(Operation.INSERT, change.getOperation());
+		assertTrue(change.getOldValues().isEmpty());
+		assertEquals(ImmutableMap.of("id", "1", "name", "John"), change.getNewValues());
+	}
+
+	@Test
+	public void testThatUpdatesOfKeysAreParsed() {
+		Change change = TestDecodingParser.parse(
+				"table public.users: UPDATE: old-key: id[bigint]:1 new-tuple: id[bigint]:2 name[text]:'John'");
+
+		assertEquals(Operation.UPDATE, change.getOperation());
+		assertEquals(ImmutableMap.of("id", "1"), change.getOldValues());
+		assertEquals(ImmutableMap.of("id", "2", "name", "John"), change.getNewValues());
+	}
+
+	@Test
+	public void testThatDeletesAreParsed() {
+		Change change = TestDecodingParser.parse("table public.users: DELETE: id[bigint]:2");
+
+		assertEquals(Operation.DELETE, change.getOperation());
+		assertEquals(ImmutableMap.of("id", "2"), change.getOldValues());
+		assertTrue(change.getNewValues().isEmpty());
+	}
+
+	@Test
+	public void testThatQuotedIdentifiersAndValuesAreParsed() {
+		Change change = TestDecodingParser.parse("table \"my schema\".\"user.s\": INSERT: "
+				+ "\"full name\"[character varying]:'O''Brien, Jr. ' note[text]:null");
+
+		assertEquals("user.s", change.getTableName());
+		assertEquals("O'Brien, Jr. ", change.getNewValues().get("full name"));
+		assertTrue(change.getNewValues().containsKey("note"));
+		assertNull(change.getNewValues().get("note"));
+	}
+
+	@Test
+	public void testThatTransactionBoundariesAreIgnored() {
+		assertNull(TestDecodingParser.parse("BEGIN"));
+		assertNull(TestDecodingParser.parse("COMMIT"));
+		assertNull(TestDecodingParser.parse("table public.users: TRUNCATE: (no-flags)"));
+	}
+
+}
@@ -1,45 +1,49 @@
 package io.quantumdb.query.rewriter;
 
 import java.sql.SQLException;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
+import io.quantumdb.query.rewriter.PostgresqlTokenizer.TokenType;
+
 @Experimental
 public class PostgresqlQueryRewriter implements QueryRewriter {
 
 	private static class State {
 
+		private final String query;
+		private final TableNameIndex tableNames;
 		private StringBuilder output;
-		private String query;
-		private int lastProcessedCursor;
-		private int cursor;
-		private String previousWord;
-		private Deque<Character> stack;
-
-		private State(String query) {
+		private int lastCopiedCursor;
+
+		private boolean expectingTableName;
+		private boolean expectingNamePart;
+		private int nameParts;
+		private int firstPartStart;
+		private int firstPartEnd;
+		private TokenType firstPartType;
+		private int lastPartStart;
+		private int lastPartEnd;
+		private TokenType lastPartType;
+
+		private State(String query, TableNameIndex tableNames) {
 			this.query = query;
-			this.output = new StringBuilder();
-			this.cursor = 0;
-			this.lastProcessedCursor = 0;
-			this.previousWord = "";
-			this.stack = new LinkedList<>();
+			this.tableNames = tableNames;
+			this.lastCopiedCursor = 0;
 		}
 
 	}
 
 	private static final String DEFAULT_SCHEMA = "public";
+	private static final String[] TABLE_KEYWORDS = { "from", "join", "update", "into" };
 
-	private final Map<String, String> tableMapping;
+	private volatile TableNameIndex tableNames;
 
 	public PostgresqlQueryRewriter() {
-		this.tableMapping = new HashMap<>();
+		this.tableNames = TableNameIndex.EMPTY;
 	}
 
 	public void setTableMapping(Map<String, String> newTableMapping) {
-		tableMapping.clear();
-		tableMapping.putAll(newTableMapping);
+		this.tableNames = TableNameIndex.of(newTableMapping);
 	}
 
 	public String rewrite(String query) throws SQLException {
@@ -47,119 +51,169 @@ public class PostgresqlQueryRewriter implements QueryRewriter {
 			throw new IllegalArgumentException("You must specify specify a 'query'.");
 		}
 
-		State state = new State(query);
-		for (state.cursor = 0; state.cursor < query.length(); state.cursor++) {
-			char currentCharacter = query.charAt(state.cursor);
+		TableNameIndex tableNames = this.tableNames;
+		if (tableNames.isEmpty() || !tableNames.mightRequireRewrite(query)) {
+			return query;
+		}
+
+		State state = new State(query, tableNames);
+		PostgresqlTokenizer tokenizer = new PostgresqlTokenizer(query);
 
-				switch (currentCharacter) {
-					case '\'':
-					case '\"':
-					case '`':
-						Character onStack = state.stack.peekFirst();
-						if (onStack != null && onStack.equals(currentCharacter)) {
-							state.stack.removeFirst();
-						}
-						else {
-							state.stack.addFirst(currentCharacter);
+		TokenType type;
+		while ((type = tokenizer.next()) != TokenType.END) {
+			int start = tokenizer.getStart();
+			int end = tokenizer.getEnd();
+
+			switch (type) {
+				case WHITESPACE:
+				case COMMENT:
+					if (state.nameParts > 0) {
+						processTableName(state);
+					}
+					break;
+				case WORD:
+				case QUOTED_IDENTIFIER:
+					if (state.expectingTableName && (state.nameParts == 0 || state.expectingNamePart)) {
+						processNamePart(state, type, start, end);
+					}
+					else {
+						if (state.nameParts > 0) {
+							processTableName(state);
 						}
-						processWordStartOrMiddle(state);
-						break;
-					case ' ':
-					case ',':
-					case ';':
-						if (state.stack.isEmpty()) {
-							processWordEnding(state);
+						state.expectingTableName = type == TokenType.WORD && isTableKeyword(query, start, end);
+					}
+					break;
+				case STRING:
+					if (state.expectingTableName && state.nameParts == 0 && query.charAt(start) == '\'') {
+						processQuotedTableName(state, start, end);
+					}
+					else if (state.nameParts > 0) {
+						processTableName(state);
+					}
+					state.expectingTableName = false;
+					break;
+				default:
+					if (state.nameParts > 0 && !state.expectingNamePart && query.charAt(start) == '.') {
+						state.expectingNamePart = true;
+					}
+					else {
+						if (state.nameParts > 0) {
+							processTableName(state);
 						}
-						processWordStartOrMiddle(state);
-						break;
-					default:
-						processWordStartOrMiddle(state);
-						break;
-				}
+						state.expectingTableName = false;
+					}
+					break;
+			}
 		}
 
-		processWordEnding(state);
+		if (state.nameParts > 0) {
+			processTableName(state);
+		}
 
-		return state.output.toString();
+		if (state.output == null) {
+			return query;
+		}
+		return state.output.append(query, state.lastCopiedCursor, query.length()).toString();
 	}
 
-	private void processWordEnding(State state) throws SQLException {
-		String word = state.query.substring(state.lastProcessedCursor, state.cursor);
-
-		if (word.trim().isEmpty()) {
-			state.output.append(word);
+	private void processNamePart(State state, TokenType type, int start, int end) {
+		if (state.nameParts == 0) {
+			state.firstPartType = type;
+			state.firstPartStart = start;
+			state.firstPartEnd = end;
 		}
-		else {
-			state.output.append(processWord(state, word));
-		}
-
-		state.lastProcessedCursor = state.cursor;
+		state.lastPartType = type;
+		state.lastPartStart = start;
+		state.lastPartEnd = end;
+		state.expectingNamePart = false;
+		state.nameParts++;
 	}
 
-	private void processWordStartOrMiddle(State state) {
-		String word = state.query.substring(state.lastProcessedCursor, state.cursor);
+	/**
+	 * Resolves a (possibly schema-qualified) table name which was collected after one of the TABLE_KEYWORDS, and
+	 * replaces its last part with the table name it maps to.
+	 */
+	private void processTableName(State state) {
+		boolean resolvable = !state.expectingNamePart
+				&& (state.nameParts == 1 || (state.nameParts == 2 && isDefaultSchema(state)));
 
-		if (word.trim().isEmpty()) {
-			state.output.append(word);
-			state.lastProcessedCursor = state.cursor;
-		}
-	}
+		state.nameParts = 0;
+		state.expectingNamePart = false;
+		state.expectingTableName = false;
 
-	private String processWord(State state, String word) throws SQLException {
-		if (state.previousWord.equalsIgnoreCase("from") || state.previousWord.equalsIgnoreCase("join") ||
-				state.previousWord.equalsIgnoreCase("update") || state.previousWord.equalsIgnoreCase("into")) {
+		if (!resolvable) {
+			return;
+		}
 
-			boolean isQuoted = isQuoted(word);
-			if (isQuoted) {
-				word = word.substring(1, word.length() - 1);
+		if (state.lastPartType == TokenType.QUOTED_IDENTIFIER) {
+			String tableName = resolveQuotedIdentifier(state, state.lastPartStart, state.lastPartEnd);
+			if (tableName != null) {
+				replace(state, state.lastPartStart, state.lastPartEnd, "\"" + tableName.replace("\"", "\"\"") + "\"");
 			}
-
-			String schema = null;
-			if (word != null && word.startsWith(DEFAULT_SCHEMA + ".")) {
-				schema = DEFAULT_SCHEMA;
-				word = word.substring(DEFAULT_SCHEMA.length() + 1, word.length());
+		}
+		else {
+			String tableName = state.tableNames.resolve(state.query, state.lastPartStart, state.lastPartEnd, false);
+			if (tableName != null) {
+				replace(state, state.lastPartStart, state.lastPartEnd, tableName);
 			}
+		}
+	}
 
-			String tableName = tableMapping.get(word);
-
-			if (!isQuoted && tableName == null) {
-				for (Map.Entry<String, String> entry : tableMapping.entrySet()) {
-					if (entry.getKey().equalsIgnoreCase(word)) {
-						tableName = entry.getValue();
-						break;
-					}
-				}
-			}
+	private void processQuotedTableName(State state, int start, int end) {
+		if (end - start < 2 || state.query.charAt(end - 1) != '\'') {
+			return;
+		}
 
-			if (tableName == null) {
-				//throw new SQLException("No table with name: '" + word + "' exists.");
-			}
-			else {
-				word = tableName;
-			}
+		String tableName = state.tableNames.resolve(state.query, start + 1, end - 1, true);
+		if (tableName != null) {
+			replace(state, start + 1, end - 1, tableName);
+		}
+	}
 
-			if (schema != null) {
-				word = schema + "." + word;
-			}
+	private boolean isDefaultSchema(State state) {
+		int length = state.firstPartEnd - state.firstPartStart;
+		if (state.firstPartType == TokenType.QUOTED_IDENTIFIER) {
+			return length == DEFAULT_SCHEMA.length() + 2
+					&& state.query.regionMatches(state.firstPartStart + 1, DEFAULT_SCHEMA, 0, DEFAULT_SCHEMA.length());
+		}
+		return length == DEFAULT_SCHEMA.length()
+				&& state.query.regionMatches(true, state.firstPartStart, DEFAULT_SCHEMA, 0, DEFAULT_SCHEMA.length());
+	}
 
-			if (isQuoted) {
-				word = "'" + word + "'";
-			}
+	private String resolveQuotedIdentifier(State state, int start, int end) {
+		if (end - start < 2 || state.query.charAt(end - 1) != '"') {
+			return null;
 		}
 
-		state.previousWord = word;
-		return word;
+		int quote = state.query.indexOf('"', start + 1);
+		if (quote < end - 1) {
+			String name = state.query.substring(start + 1, end - 1).replace("\"\"", "\"");
+			return state.tableNames.resolve(name, 0, name.length(), true);
+		}
+		return state.tableNames.resolve(state.query, start + 1, end - 1, true);
 	}
 
-	private boolean isQuoted(String word) {
-		char first = word.charAt(0);
-		char last = word.charAt(word.length() - 1);
+	private void replace(State state, int start, int end, String replacement) {
+		int length = end - start;
+		if (replacement.length() == length && state.query.regionMatches(start, replacement, 0, length)) {
+			return;
+		}
 
-		if (first != last) {
-			return false;
+		if (state.output == null) {
+			state.output = new StringBuilder(state.query.length() + 16);
 		}
+		state.output.append(state.query, state.lastCopiedCursor, start).append(replacement);
+		state.lastCopiedCursor = end;
+	}
 
-		return first == '\'';
+	private static boolean isTableKeyword(String query, int start, int end) {
+		int length = end - start;
+		for (String keyword : TABLE_KEYWORDS) {
+			if (keyword.length() == length && query.regionMatches(true, start, keyword, 0, length)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 }
@@ -0,0 +1,221 @@
+package io.quantumdb.query.rewriter;
+
+/**
+ * Splits a PostgreSQL query into tokens in a single pass over its characters. Tokens are not materialized as
+ * objects or Strings: after each call to {@link #next()} the type of the current token can be read through
+ * {@link #getType()}, and its boundaries through {@link #getStart()} (inclusive) and {@link #getEnd()} (exclusive).
+ *
+ * The tokenizer is aware of single-quoted strings (including escaped quotes and E'' strings), dollar-quoted
+ * strings, double-quoted identifiers, line comments and (nested) block comments, so that none of their contents
+ * are mistaken for keywords or table names.
+ */
+class PostgresqlTokenizer {
+
+	enum TokenType {
+		/** One or more whitespace characters. */
+		WHITESPACE,
+		/** A line comment (-- ...) or block comment. */
+		COMMENT,
+		/** An unquoted keyword, identifier or number. */
+		WORD,
+		/** A double-quoted identifier, including its surrounding quotes. */
+		QUOTED_IDENTIFIER,
+		/** A single-quoted, escape or dollar-quoted string, including its surrounding quotes. */
+		STRING,
+		/** A positional parameter such as $1. */
+		PARAMETER,
+		/** Any other single character such as '.', ',', ';', '(' or an operator character. */
+		PUNCTUATION,
+		/** Signals that the entire query has been tokenized. */
+		END
+	}
+
+	private final String query;
+	private final int length;
+
+	private TokenType type;
+	private int start;
+	private int end;
+
+	PostgresqlTokenizer(String query) {
+		this.query = query;
+		this.length = query.length();
+		this.start = 0;
+		this.end = 0;
+	}
+
+	TokenType getType() {
+		return type;
+	}
+
+	int getStart() {
+		return start;
+	}
+
+	int getEnd() {
+		return end;
+	}
+
+	TokenType next() {
+		start = end;
+		if (start >= length) {
+			type = TokenType.END;
+			return type;
+		}
+
+		char current = query.charAt(start);
+		char next = start + 1 < length ? query.charAt(start + 1) : 0;
+
+		if (Character.isWhitespace(current)) {
+			end = skipWhitespace(start + 1);
+			type = TokenType.WHITESPACE;
+		}
+		else if (current == '-' && next == '-') {
+			end = skipLineComment(start + 2);
+			type = TokenType.COMMENT;
+		}
+		else if (current == '/' && next == '*') {
+			end = skipBlockComment(start + 2);
+			type = TokenType.COMMENT;
+		}
+		else if (current == '\'') {
+			end = skipQuoted(start + 1, '\'', false);
+			type = TokenType.STRING;
+		}
+		else if ((current == 'E' || current == 'e') && next == '\'') {
+			end = skipQuoted(start + 2, '\'', true);
+			type = TokenType.STRING;
+		}
+		else if (current == '"') {
+			end = skipQuoted(start + 1, '"', false);
+			type = TokenType.QUOTED_IDENTIFIER;
+		}
+		else if (current == '$') {
+			tokenizeDollar();
+		}
+		else if (isIdentifierStart(current) || Character.isDigit(current)) {
+			end = skipIdentifier(start + 1);
+			type = TokenType.WORD;
+		}
+		else {
+			end = start + 1;
+			type = TokenType.PUNCTUATION;
+		}
+
+		return type;
+	}
+
+	private void tokenizeDollar() {
+		int position = start + 1;
+		if (position < length && Character.isDigit(query.charAt(position))) {
+			while (position < length && Character.isDigit(query.charAt(position))) {
+				position++;
+			}
+			end = position;
+			type = TokenType.PARAMETER;
+			return;
+		}
+
+		if (position < length && isIdentifierStart(query.charAt(position))) {
+			position++;
+			while (position < length && isDollarTagPart(query.charAt(position))) {
+				position++;
+			}
+		}
+
+		if (position < length && query.charAt(position) == '$') {
+			int tagLength = position + 1 - start;
+			end = skipDollarQuoted(position + 1, tagLength);
+			type = TokenType.STRING;
+			return;
+		}
+
+		end = start + 1;
+		type = TokenType.PUNCTUATION;
+	}
+
+	private int skipWhitespace(int position) {
+		while (position < length && Character.isWhitespace(query.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private int skipLineComment(int position) {
+		while (position < length) {
+			char current = query.charAt(position++);
+			if (current == '\n' || current == '\r') {
+				break;
+			}
+		}
+		return position;
+	}
+
+	private int skipBlockComment(int position) {
+		int depth = 1;
+		while (position < length && depth > 0) {
+			char current = query.charAt(position);
+			char next = position + 1 < length ? query.charAt(position + 1) : 0;
+			if (current == '*' && next == '/') {
+				depth--;
+				position += 2;
+			}
+			else if (current == '/' && next == '*') {
+				depth++;
+				position += 2;
+			}
+			else {
+				position++;
+			}
+		}
+		return position;
+	}
+
+	private int skipQuoted(int position, char quote, boolean backslashEscapes) {
+		while (position < length) {
+			char current = query.charAt(position++);
+			if (backslashEscapes && current == '\\') {
+				position++;
+			}
+			else if (current == quote) {
+				if (position < length && query.charAt(position) == quote) {
+					position++;
+				}
+				else {
+					return position;
+				}
+			}
+		}
+		return length;
+	}
+
+	private int skipDollarQuoted(int position, int tagLength) {
+		while (position < length) {
+			if (query.charAt(position) == '$' && query.regionMatches(position, query, start, tagLength)) {
+				return position + tagLength;
+			}
+			position++;
+		}
+		return length;
+	}
+
+	private int skipIdentifier(int position) {
+		while (position < length && isIdentifierPart(query.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private static boolean isIdentifierStart(char character) {
+		return Character.isLetter(character) || character == '_' || character > 127;
+	}
+
+	private static boolean isDollarTagPart(char character) {
+		return isIdentifierStart(character) || Character.isDigit(character);
+	}
+
+	private static boolean isIdentifierPart(char character) {
+		return isIdentifierStart(character) || Character.isDigit(character) || character == '$';
+	}
+
+}
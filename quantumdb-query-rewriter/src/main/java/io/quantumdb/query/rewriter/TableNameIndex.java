@@ -0,0 +1,246 @@
+package io.quantumdb.query.rewriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, open-addressing hash index of table names which is built once per table mapping. Table names can
+ * be resolved directly from a region of the query which is being rewritten, either case-sensitively (for quoted
+ * identifiers) or case-insensitively (for unquoted identifiers), at a constant cost regardless of the number of
+ * tables in the mapping, and without allocating any intermediate Strings.
+ *
+ * Mapping keys which are qualified with the default schema (for instance "public.users") are indexed by their
+ * unqualified name as well, since the query rewriter only ever resolves the last part of a qualified name.
+ *
+ * Next to the hash index a bloom filter of all (case-folded) table names is kept, which allows
+ * {@link #mightRequireRewrite(String)} to cheaply prove that a query does not refer to any of the mapped tables.
+ */
+class TableNameIndex {
+
+	static final TableNameIndex EMPTY = new TableNameIndex(new String[0], new String[0]);
+
+	private static final String DEFAULT_SCHEMA_PREFIX = "public.";
+	private static final String[] TABLE_KEYWORDS = { "from", "join", "update", "into" };
+	private static final int FILTER_BITS_PER_NAME = 16;
+
+	static TableNameIndex of(Map<String, String> tableMapping) {
+		if (tableMapping.isEmpty()) {
+			return EMPTY;
+		}
+
+		List<String> names = new ArrayList<>(tableMapping.size());
+		List<String> targets = new ArrayList<>(tableMapping.size());
+		tableMapping.forEach((name, target) -> {
+			names.add(name);
+			targets.add(target);
+		});
+		tableMapping.forEach((name, target) -> {
+			if (name.startsWith(DEFAULT_SCHEMA_PREFIX) && name.length() > DEFAULT_SCHEMA_PREFIX.length()) {
+				names.add(name.substring(DEFAULT_SCHEMA_PREFIX.length()));
+				targets.add(target);
+			}
+		});
+
+		return new TableNameIndex(names.toArray(new String[0]), targets.toArray(new String[0]));
+	}
+
+	private final String[] names;
+	private final String[] targets;
+	private final boolean[] lowerCase;
+	private final int[] hashes;
+	private final int mask;
+
+	private final long[] filter;
+	private final int filterMask;
+	private final boolean filterEnabled;
+
+	private TableNameIndex(String[] entryNames, String[] entryTargets) {
+		int capacity = 16;
+		while (capacity < entryNames.length * 2) {
+			capacity <<= 1;
+		}
+
+		this.names = new String[capacity];
+		this.targets = new String[capacity];
+		this.lowerCase = new boolean[capacity];
+		this.hashes = new int[capacity];
+		this.mask = capacity - 1;
+
+		int filterBits = 64;
+		while (filterBits < entryNames.length * FILTER_BITS_PER_NAME) {
+			filterBits <<= 1;
+		}
+
+		this.filter = new long[filterBits / 64];
+		this.filterMask = filterBits - 1;
+
+		boolean canFilter = true;
+		for (int i = 0; i < entryNames.length; i++) {
+			String name = entryNames[i];
+			int hash = hash(name, 0, name.length());
+			int slot = hash & mask;
+			while (names[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+
+			names[slot] = name;
+			targets[slot] = entryTargets[i];
+			lowerCase[slot] = name.equals(name.toLowerCase());
+			hashes[slot] = hash;
+
+			if (isPlainIdentifier(name)) {
+				addToFilter(hash);
+			}
+			else if (!name.startsWith(DEFAULT_SCHEMA_PREFIX)) {
+				// Names such as "my table" can never be found by scanning for plain identifiers.
+				canFilter = false;
+			}
+		}
+
+		this.filterEnabled = canFilter;
+	}
+
+	boolean isEmpty() {
+		return this == EMPTY;
+	}
+
+	/**
+	 * Resolves the table name found in the specified region of the query.
+	 *
+	 * @param query The query containing the table name.
+	 * @param start The index of the first character of the table name.
+	 * @param end The index after the last character of the table name.
+	 * @param caseSensitive True if only exact matches may be resolved, false if unquoted identifier semantics apply.
+	 * @return The table name it maps to, or NULL if no such table name is present in the index.
+	 */
+	String resolve(String query, int start, int end, boolean caseSensitive) {
+		int length = end - start;
+		int hash = hash(query, start, end);
+		int slot = hash & mask;
+
+		String candidate = null;
+		boolean candidateIsLowerCase = false;
+		while (names[slot] != null) {
+			String name = names[slot];
+			if (hashes[slot] == hash && name.length() == length) {
+				if (query.regionMatches(start, name, 0, length)) {
+					return targets[slot];
+				}
+				if (!caseSensitive && !candidateIsLowerCase && query.regionMatches(true, start, name, 0, length)) {
+					candidate = targets[slot];
+					candidateIsLowerCase = lowerCase[slot];
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		return candidate;
+	}
+
+	/**
+	 * Scans the specified query for plain identifiers, without regard for strings, comments or quoting. This
+	 * errs on the side of caution: it only returns false if the query contains none of the keywords which precede
+	 * table names, or if none of its identifiers can possibly be one of the table names in this index.
+	 *
+	 * @param query The query to scan.
+	 * @return False if the query is guaranteed not to need any rewriting, true if it might.
+	 */
+	boolean mightRequireRewrite(String query) {
+		if (!filterEnabled) {
+			return true;
+		}
+
+		boolean containsKeyword = false;
+		boolean containsCandidate = false;
+
+		int length = query.length();
+		int wordStart = -1;
+		int hash = 0;
+		for (int i = 0; i <= length; i++) {
+			char current = i < length ? query.charAt(i) : ' ';
+			if (isIdentifierCharacter(current)) {
+				if (wordStart == -1) {
+					wordStart = i;
+					hash = 0;
+				}
+				hash = 31 * hash + fold(current);
+			}
+			else if (wordStart != -1) {
+				if (!containsCandidate && filterContains(hash ^ (hash >>> 16))) {
+					containsCandidate = true;
+				}
+				if (!containsKeyword && isTableKeyword(query, wordStart, i)) {
+					containsKeyword = true;
+				}
+				if (containsKeyword && containsCandidate) {
+					return true;
+				}
+				wordStart = -1;
+			}
+		}
+
+		return false;
+	}
+
+	private void addToFilter(int hash) {
+		int secondary = Integer.rotateLeft(hash * 0x9E3779B9, 16) | 1;
+		for (int i = 0; i < 3; i++) {
+			int bit = (hash + i * secondary) & filterMask;
+			filter[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	private boolean filterContains(int hash) {
+		int secondary = Integer.rotateLeft(hash * 0x9E3779B9, 16) | 1;
+		for (int i = 0; i < 3; i++) {
+			int bit = (hash + i * secondary) & filterMask;
+			if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isTableKeyword(String query, int start, int end) {
+		int length = end - start;
+		for (String keyword : TABLE_KEYWORDS) {
+			if (keyword.length() == length && query.regionMatches(true, start, keyword, 0, length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isPlainIdentifier(String name) {
+		if (name.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (!isIdentifierCharacter(name.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isIdentifierCharacter(char character) {
+		return Character.isLetterOrDigit(character) || character == '_' || character > 127;
+	}
+
+	private static int hash(String value, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + fold(value.charAt(i));
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static char fold(char character) {
+		if (character < 128) {
+			return character >= 'A' && character <= 'Z' ? (char) (character + ('a' - 'A')) : character;
+		}
+		return Character.toLowerCase(Character.toUpperCase(character));
+	}
+
+}
@@ -1,6 +1,7 @@
 package io.quantumdb.query.rewriter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -98,6 +99,99 @@ public class PostgresqlQueryRewriterTest {
 		assertEquals(expected, rewrite(input));
 	}
 
+	@Test
+	public void testSelectQueryWithTableNameBetweenDoubleQuotes() throws SQLException {
+		String input = "SELECT * FROM \"users\" WHERE id = 1";
+		String expected = "SELECT * FROM \"users_v2\" WHERE id = 1";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testSelectQueryWithSchemaAndTableNameBetweenDoubleQuotes() throws SQLException {
+		String input = "SELECT * FROM \"public\".\"users\"";
+		String expected = "SELECT * FROM \"public\".\"users_v2\"";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatTableNameIsFollowedByNewLine() throws SQLException {
+		String input = "SELECT *\nFROM users\nWHERE users.id = 1";
+		String expected = "SELECT *\nFROM users_v2\nWHERE users.id = 1";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testSubQuery() throws SQLException {
+		String input = "SELECT * FROM (SELECT * FROM users) AS u JOIN accounts ON u.id = accounts.owner_id";
+		String expected = "SELECT * FROM (SELECT * FROM users_v2) AS u JOIN accounts_v2 ON u.id = accounts.owner_id";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatKeywordsInStringLiteralsAreIgnored() throws SQLException {
+		String input = "INSERT INTO users (name) VALUES ('it''s from users'), (E'from \\' users')";
+		String expected = "INSERT INTO users_v2 (name) VALUES ('it''s from users'), (E'from \\' users')";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatKeywordsInDollarQuotedStringsAreIgnored() throws SQLException {
+		String input = "UPDATE users SET bio = $body$ from users $body$, note = $$into users$$ WHERE id = $1";
+		String expected = "UPDATE users_v2 SET bio = $body$ from users $body$, note = $$into users$$ WHERE id = $1";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatKeywordsInCommentsAreIgnored() throws SQLException {
+		String input = "SELECT * /* from users */ FROM -- join accounts\n users";
+		String expected = "SELECT * /* from users */ FROM -- join accounts\n users_v2";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatUnchangedQueryIsReturnedAsIs() throws SQLException {
+		String input = "SELECT * FROM transactions";
+		assertSame(input, rewrite(input));
+	}
+
+	@Test
+	public void testThatDoubleQuotedTableNameIsCaseSensitive() throws SQLException {
+		String input = "SELECT * FROM \"Users\"";
+		assertSame(input, rewrite(input));
+	}
+
+	@Test
+	public void testThatUnquotedTableNamePrefersLowerCaseMapping() throws SQLException {
+		tableMappings.put("USERS", "users_v3");
+		String input = "SELECT * FROM Users";
+		String expected = "SELECT * FROM users_v2";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatSchemaQualifiedMappingIsResolved() throws SQLException {
+		tableMappings.put("public.payments", "payments_v2");
+		String input = "SELECT * FROM payments JOIN public.Payments p ON true";
+		String expected = "SELECT * FROM payments_v2 JOIN public.payments_v2 p ON true";
+		assertEquals(expected, rewrite(input));
+	}
+
+	@Test
+	public void testThatStatementsWithoutMappedTablesAreReturnedAsIs() throws SQLException {
+		String[] inputs = {
+				"SELECT 1",
+				"SET search_path TO public",
+				"SHOW server_version",
+				"BEGIN",
+				"SELECT nextval('users_id_seq')",
+				"SELECT * FROM orders WHERE note = 'users'"
+		};
+
+		for (String input : inputs) {
+			assertSame(input, rewrite(input));
+		}
+	}
+
 	private String rewrite(String query) throws SQLException {
 		rewriter.setTableMapping(tableMappings);
 		return rewriter.rewrite(query);